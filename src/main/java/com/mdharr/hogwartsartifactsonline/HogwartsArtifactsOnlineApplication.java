@@ -1,11 +1,15 @@
 package com.mdharr.hogwartsartifactsonline;
 
 import com.mdharr.hogwartsartifactsonline.artifact.utils.IdWorker;
+import com.mdharr.hogwartsartifactsonline.system.nodeidentity.LeasedIdWorker;
+import com.mdharr.hogwartsartifactsonline.system.nodeidentity.NodeIdentityService;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class HogwartsArtifactsOnlineApplication {
 
 	public static void main(String[] args) {
@@ -13,8 +17,8 @@ public class HogwartsArtifactsOnlineApplication {
 	}
 
 	@Bean
-	public IdWorker idWorker() {
-		return new IdWorker(1, 1);
+	public IdWorker idWorker(NodeIdentityService nodeIdentityService) {
+		return new LeasedIdWorker(nodeIdentityService); // Each replica leases its own worker id, so ids never collide across nodes.
 	}
 
 }
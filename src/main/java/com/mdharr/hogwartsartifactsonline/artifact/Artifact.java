@@ -1,13 +1,22 @@
 package com.mdharr.hogwartsartifactsonline.artifact;
 
 import com.mdharr.hogwartsartifactsonline.wizard.Wizard;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
+import java.time.Instant;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "artifact")
 public class Artifact implements Serializable {
 
     @Id
@@ -22,6 +31,13 @@ public class Artifact implements Serializable {
     @ManyToOne
     private Wizard owner;
 
+    // Bumped on every change, so concurrent reassignments of the same artifact cannot overwrite each other unnoticed.
+    @Version
+    private Integer version;
+
+    // Sent as Last-Modified. The bulk owner UPDATEs in ArtifactRepository set it themselves.
+    private Instant lastModified;
+
     public Artifact() {}
 
     public Artifact(String id, String name, String description, String imageUrl) {
@@ -71,4 +87,26 @@ public class Artifact implements Serializable {
         this.owner = owner;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.lastModified = Instant.now();
+    }
+
 }
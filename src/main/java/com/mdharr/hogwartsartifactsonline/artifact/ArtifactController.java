@@ -1,14 +1,37 @@
 package com.mdharr.hogwartsartifactsonline.artifact;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.mdharr.hogwartsartifactsonline.artifact.converter.ArtifactDtoToArtifactConverter;
 import com.mdharr.hogwartsartifactsonline.artifact.converter.ArtifactToArtifactDtoConverter;
 import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
+import com.mdharr.hogwartsartifactsonline.system.CursorPage;
+import com.mdharr.hogwartsartifactsonline.system.OptimisticLockRetrier;
 import com.mdharr.hogwartsartifactsonline.system.Result;
+import com.mdharr.hogwartsartifactsonline.system.SingleFlight;
 import com.mdharr.hogwartsartifactsonline.system.StatusCode;
+import com.mdharr.hogwartsartifactsonline.system.Validators;
+import com.mdharr.hogwartsartifactsonline.wizard.Wizard;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -21,28 +44,183 @@ public class ArtifactController {
 
     private final ArtifactDtoToArtifactConverter artifactDtoToArtifactConverter;
 
+    private final ArtifactDtoCache artifactDtoCache;
+
+    private final ObjectWriter artifactDtoWriter;
+
+    private final ObjectReader artifactDtoReader;
+
+    private final ArtifactImportService artifactImportService;
+
+    private final OptimisticLockRetrier optimisticLockRetrier;
+
+    // Concurrent GET /artifacts/{artifactId}?fields= for the same artifact and fields share one load.
+    // Without fields, ArtifactDtoCache already runs one load per artifact id at a time.
+    private final SingleFlight<ProjectionKey, ArtifactProjection> projectionLoads;
+
+    private final int defaultPageSize;
+
+    private final int maxPageSize;
+
     public ArtifactController(ArtifactService artifactService,
                               ArtifactToArtifactDtoConverter artifactToArtifactDtoConverter,
-                              ArtifactDtoToArtifactConverter artifactDtoToArtifactConverter) {
+                              ArtifactDtoToArtifactConverter artifactDtoToArtifactConverter,
+                              ArtifactDtoCache artifactDtoCache,
+                              ArtifactImportService artifactImportService,
+                              ObjectMapper objectMapper,
+                              OptimisticLockRetrier optimisticLockRetrier,
+                              MeterRegistry meterRegistry,
+                              @Value("${api.pagination.default-page-size}") int defaultPageSize,
+                              @Value("${api.pagination.max-page-size}") int maxPageSize) {
         this.artifactService = artifactService;
         this.artifactToArtifactDtoConverter = artifactToArtifactDtoConverter;
         this.artifactDtoToArtifactConverter = artifactDtoToArtifactConverter;
+        this.artifactDtoCache = artifactDtoCache;
+        this.artifactDtoWriter = objectMapper.writerFor(ArtifactDto.class);
+        this.artifactDtoReader = objectMapper.readerFor(ArtifactDto.class);
+        this.artifactImportService = artifactImportService;
+        this.optimisticLockRetrier = optimisticLockRetrier;
+        this.projectionLoads = new SingleFlight<>("artifactProjection", meterRegistry);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
+    private record ProjectionKey(String artifactId, Set<ArtifactField> fields) {
+    }
+
+    /**
+     * Finds one artifact. With fields, e.g. ?fields=id,name, only those ArtifactDto properties are read and returned,
+     * bypassing the cache; the owner is joined only when fields contains owner.
+     *
+     * @param artifactId
+     * @param fields
+     * @param request
+     * @return
+     */
     @GetMapping("/{artifactId}")
-    public Result findArtifactById(@PathVariable String artifactId) {
-        Artifact foundArtifact = this.artifactService.findById(artifactId);
-        ArtifactDto artifactDto = artifactToArtifactDtoConverter.convert(foundArtifact);
-        return new Result(true, StatusCode.SUCCESS, "Find One Success", artifactDto);
+    public Result findArtifactById(@PathVariable String artifactId,
+                                   @RequestParam(required = false) String fields,
+                                   WebRequest request) {
+        if (fields != null) {
+            ArtifactProjection projection = this.projectionLoads.load(new ProjectionKey(artifactId, ArtifactField.parse(fields)),
+                    key -> this.artifactService.findById(key.artifactId(), key.fields()));
+            if (projection.validators().checkNotModified(request)) {
+                return null; // 304 Not Modified, without a body.
+            }
+            return new Result(true, StatusCode.SUCCESS, "Find One Success", projection.fields());
+        }
+        ArtifactDtoCache.Entry entry = this.artifactDtoCache.get(artifactId, id -> {
+            Artifact artifact = this.artifactService.findById(id);
+            return new ArtifactDtoCache.Entry(this.artifactToArtifactDtoConverter.convert(artifact), validatorsOf(artifact));
+        });
+        if (entry.validators().checkNotModified(request)) {
+            return null; // 304 Not Modified, without a body.
+        }
+        return new Result(true, StatusCode.SUCCESS, "Find One Success", entry.artifactDto());
+    }
+
+    // The ArtifactDto embeds the owner, so the owner's version is part of the artifact's ETag.
+    private static Validators validatorsOf(Artifact artifact) {
+        Wizard owner = artifact.getOwner();
+        return owner == null
+                ? Validators.of(artifact.getLastModified(), artifact.getVersion())
+                : Validators.of(Validators.latest(artifact.getLastModified(), owner.getLastModified()),
+                        artifact.getVersion(), owner.getId(), owner.getVersion());
     }
 
+    /**
+     * Lists artifacts one page at a time, ordered by id. Pass the returned nextCursor as the cursor parameter to get the next page.
+     * The page size is capped at api.pagination.max-page-size. The whole table is only returned when the client asks for it with unpaged=true.
+     * With fields, e.g. ?fields=id,name, only those ArtifactDto properties are read and returned.
+     * The ETag is derived from the rows that are returned, so answering If-None-Match costs no more than reading the page.
+     *
+     * @param cursor
+     * @param size
+     * @param unpaged
+     * @param fields
+     * @return
+     */
     @GetMapping
-    public Result findAllArtifacts() {
+    public Result findAllArtifacts(@RequestParam(required = false) String cursor,
+                                   @RequestParam(required = false) Integer size,
+                                   @RequestParam(defaultValue = "false") boolean unpaged,
+                                   @RequestParam(required = false) String fields,
+                                   WebRequest request) {
+        if (fields != null) {
+            Set<ArtifactField> selectedFields = ArtifactField.parse(fields);
+            if (unpaged) {
+                List<ArtifactProjection> projections = this.artifactService.findAll(selectedFields);
+                if (Validators.ofRows(projections, ArtifactProjection::id, ArtifactProjection::validators).checkNotModified(request)) {
+                    return null; // 304 Not Modified, without a body.
+                }
+                return new Result(true, StatusCode.SUCCESS, "Find All Success", projections.stream().map(ArtifactProjection::fields).toList());
+            }
+            CursorPage<ArtifactProjection> projectionPage = this.artifactService.findPage(cursor, pageSize(size), selectedFields);
+            if (Validators.ofRows(projectionPage.content(), ArtifactProjection::id, ArtifactProjection::validators, projectionPage.nextCursor()).checkNotModified(request)) {
+                return null;
+            }
+            return new Result(true, StatusCode.SUCCESS, "Find All Success", projectionPage.map(ArtifactProjection::fields));
+        }
+        if (!unpaged) {
+            CursorPage<Artifact> artifactPage = this.artifactService.findPage(cursor, pageSize(size));
+            // The next cursor is part of the body: it appears once a row is added after a full last page.
+            if (Validators.ofRows(artifactPage.content(), Artifact::getId, ArtifactController::validatorsOf, artifactPage.nextCursor()).checkNotModified(request)) {
+                return null;
+            }
+            CursorPage<ArtifactDto> artifactDtoPage = artifactPage.map(this.artifactToArtifactDtoConverter::convert);
+            return new Result(true, StatusCode.SUCCESS, "Find All Success", artifactDtoPage);
+        }
         List<Artifact> foundArtifacts = this.artifactService.findAll();
+        if (Validators.ofRows(foundArtifacts, Artifact::getId, ArtifactController::validatorsOf).checkNotModified(request)) {
+            return null;
+        }
         List<ArtifactDto> artifactDtos = foundArtifacts.stream().map(this.artifactToArtifactDtoConverter::convert).collect(Collectors.toList());
         return new Result(true, StatusCode.SUCCESS, "Find All Success", artifactDtos);
     }
 
+    private int pageSize(Integer size) {
+        return size == null ? this.defaultPageSize : Math.max(1, Math.min(size, this.maxPageSize));
+    }
+
+    /**
+     * Full-text search over artifact names and descriptions, best match first. Every word of q must match a word
+     * of the artifact, or the start of one, so "inv cl" finds the Invisibility Cloak.
+     * At most size results are returned, capped at api.pagination.max-page-size.
+     *
+     * @param q
+     * @param size
+     * @return
+     */
+    @GetMapping("/search")
+    public Result searchArtifacts(@RequestParam String q, @RequestParam(required = false) Integer size) {
+        List<ArtifactDto> artifactDtos = this.artifactService.search(q, pageSize(size)).stream()
+                .map(this.artifactToArtifactDtoConverter::convert)
+                .collect(Collectors.toList());
+        return new Result(true, StatusCode.SUCCESS, "Search Success", artifactDtos);
+    }
+
+    /**
+     * Streams the whole catalog as newline-delimited JSON, one ArtifactDto per line.
+     * Rows are converted and written as they are read from the database, so memory use does not grow with the catalog.
+     *
+     * @return
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportArtifacts() {
+        StreamingResponseBody body = outputStream -> {
+            this.artifactService.exportAll(artifact -> {
+                try {
+                    outputStream.write(this.artifactDtoWriter.writeValueAsBytes(this.artifactToArtifactDtoConverter.convert(artifact)));
+                    outputStream.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @PostMapping
     public Result addArtifact(@Valid @RequestBody ArtifactDto artifactDto) {
         Artifact newArtifact = this.artifactDtoToArtifactConverter.convert(artifactDto);
@@ -51,10 +229,48 @@ public class ArtifactController {
         return new Result(true, StatusCode.SUCCESS, "Add Success", savedArtifactDto);
     }
 
+    /**
+     * Adds many artifacts in one request, sent as a JSON array. See ArtifactImportService.
+     *
+     * @param artifactDtos
+     * @return
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Result addArtifacts(@RequestBody List<ArtifactDto> artifactDtos) {
+        ArtifactImportService.ArtifactImport artifactImport = this.artifactImportService.begin();
+        artifactDtos.forEach(artifactImport::add);
+        return new Result(true, StatusCode.SUCCESS, "Batch Add Success", artifactImport.finish());
+    }
+
+    /**
+     * Adds many artifacts in one request, sent as newline-delimited JSON, one ArtifactDto per line.
+     * Lines are read as they arrive, and a line that is not valid JSON only fails that item.
+     *
+     * @param body
+     * @return
+     * @throws IOException
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Result addArtifactsFromNdjson(InputStream body) throws IOException {
+        ArtifactImportService.ArtifactImport artifactImport = this.artifactImportService.begin();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                artifactImport.add(this.artifactDtoReader.readValue(line));
+            } catch (JsonProcessingException e) {
+                artifactImport.fail(Map.of("json", e.getOriginalMessage()));
+            }
+        }
+        return new Result(true, StatusCode.SUCCESS, "Batch Add Success", artifactImport.finish());
+    }
+
     @PutMapping("/{artifactId}")
     public Result updateArtifact(@PathVariable String artifactId, @Valid @RequestBody ArtifactDto artifactDto) {
         Artifact update = this.artifactDtoToArtifactConverter.convert(artifactDto);
-        Artifact updatedArtifact = this.artifactService.update(artifactId, update);
+        Artifact updatedArtifact = this.optimisticLockRetrier.call(() -> this.artifactService.update(artifactId, update));
         ArtifactDto updatedArtifactDto = this.artifactToArtifactDtoConverter.convert(updatedArtifact);
         return new Result(true, StatusCode.SUCCESS, "Update Success", updatedArtifactDto);
     }
@@ -0,0 +1,127 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
+import com.mdharr.hogwartsartifactsonline.system.SingleFlight;
+import com.mdharr.hogwartsartifactsonline.system.Validators;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Bounded, in-process read-through cache of ArtifactDto by artifact id, for GET /artifacts/{artifactId}.
+ * ArtifactDto and its nested WizardDto are records, so cached values can be shared between requests.
+ * Each ArtifactDto is cached with the Validators of the state it was converted from, so a conditional GET that hits
+ * the cache is answered without touching the database.
+ * <p>
+ * Anything that changes what an ArtifactDto looks like (the artifact itself, its owner's name or its owner's
+ * number of artifacts) must evict the affected ids.
+ * <p>
+ * Loads run outside the Caffeine map, coalesced per id by a SingleFlight. Caffeine's own get(key, loader) would run the
+ * database query inside ConcurrentHashMap.compute(), holding a bin lock that also blocks other ids and, with virtual
+ * threads, pins the carrier thread for the whole round trip.
+ */
+@Component
+public class ArtifactDtoCache {
+
+    public record Entry(ArtifactDto artifactDto, Validators validators) {
+    }
+
+    private final Cache<String, Entry> cache;
+
+    private final SingleFlight<String, Entry> loads;
+
+    // Number of eviction counters. Ids are spread over them by hash, so memory stays fixed however many ids are evicted.
+    private static final int EVICTION_STRIPES = 1024;
+
+    // Bumped by every eviction of an id in the stripe. A load only caches its entry if its stripe saw no eviction since
+    // it started, since it may have read the artifact before the change behind the eviction was committed. Evicting
+    // another id of the same stripe only costs one skipped put, and evictions of other ids do not affect the load at all.
+    private final AtomicLongArray evictions = new AtomicLongArray(EVICTION_STRIPES);
+
+    public ArtifactDtoCache(@Value("${artifact-cache.maximum-size}") long maximumSize,
+                            @Value("${artifact-cache.time-to-live}") Duration timeToLive,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        // Publishes cache.gets (tagged hit or miss), cache.evictions, cache.size, etc. under cache=artifactDtos.
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "artifactDtos");
+        Gauge.builder("cache.hit.ratio", this.cache, cache -> cache.stats().hitRate())
+                .tag("cache", "artifactDtos")
+                .register(meterRegistry);
+        this.loads = new SingleFlight<>("artifactDto", meterRegistry);
+    }
+
+    /**
+     * Returns the cached entry, or loads and caches it. Exceptions thrown by the loader,
+     * e.g. ObjectNotFoundException, are passed on and nothing is cached.
+     */
+    public Entry get(String artifactId, Function<String, Entry> loader) {
+        Entry cached = this.cache.getIfPresent(artifactId);
+        if (cached != null) {
+            return cached;
+        }
+        return this.loads.load(artifactId, id -> {
+            int stripe = stripe(id);
+            long evictionStamp = this.evictions.get(stripe);
+            Entry loaded = loader.apply(id);
+            // Runs atomically with invalidate() for the same id, and only does a comparison, never I/O.
+            this.cache.asMap().compute(id, (key, current) -> this.evictions.get(stripe) == evictionStamp ? loaded : current);
+            return loaded;
+        });
+    }
+
+    public void evict(String artifactId) {
+        evict(List.of(artifactId));
+    }
+
+    /**
+     * Evicts the given ids right away, and once more after the current transaction completes.
+     * The second eviction drops anything a concurrent reader loaded from the database before our changes were committed.
+     */
+    public void evict(Collection<String> artifactIds) {
+        artifactIds.forEach(this::invalidate);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<String> ids = List.copyOf(artifactIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(ArtifactDtoCache.this::invalidate);
+                }
+            });
+        }
+    }
+
+    public void evictAll() {
+        for (int stripe = 0; stripe < EVICTION_STRIPES; stripe++) {
+            this.evictions.incrementAndGet(stripe);
+        }
+        this.cache.invalidateAll();
+    }
+
+    private void invalidate(String artifactId) {
+        this.cache.asMap().compute(artifactId, (id, current) -> {
+            this.evictions.incrementAndGet(stripe(id));
+            return null;
+        });
+    }
+
+    static int stripe(String artifactId) {
+        int hash = artifactId.hashCode();
+        return (hash ^ (hash >>> 16)) & (EVICTION_STRIPES - 1);
+    }
+}
@@ -0,0 +1,68 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.mdharr.hogwartsartifactsonline.system.exception.InvalidFieldsException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The ArtifactDto fields a client can pick with the fields request parameter, e.g. ?fields=id,name.
+ * Each one names the columns it needs, so ArtifactService selects only those. Only OWNER joins the wizard table.
+ */
+public enum ArtifactField {
+
+    ID("id", "a.id"),
+    NAME("name", "a.name"),
+    DESCRIPTION("description", "a.description"),
+    IMAGE_URL("imageUrl", "a.imageUrl"),
+    OWNER("owner", "o");
+
+    private final String jsonName;
+
+    // For OWNER, the alias of the joined wizard.
+    private final String column;
+
+    ArtifactField(String jsonName, String column) {
+        this.jsonName = jsonName;
+        this.column = column;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    String getColumn() {
+        return column;
+    }
+
+    /**
+     * Parses a comma separated list of ArtifactDto property names. Blanks and duplicates are ignored.
+     *
+     * @param fields e.g. "id,name"
+     * @return
+     * @throws InvalidFieldsException if a name is not an ArtifactDto property, or no name is given
+     */
+    public static Set<ArtifactField> parse(String fields) {
+        Set<ArtifactField> parsed = EnumSet.noneOf(ArtifactField.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            parsed.add(fromJsonName(trimmed));
+        }
+        if (parsed.isEmpty()) {
+            throw new InvalidFieldsException("fields must name at least one of id, name, description, imageUrl and owner.");
+        }
+        return parsed;
+    }
+
+    private static ArtifactField fromJsonName(String jsonName) {
+        for (ArtifactField field : values()) {
+            if (field.jsonName.equals(jsonName)) {
+                return field;
+            }
+        }
+        throw new InvalidFieldsException("Unknown field " + jsonName + ", expected any of id, name, description, imageUrl and owner.");
+    }
+}
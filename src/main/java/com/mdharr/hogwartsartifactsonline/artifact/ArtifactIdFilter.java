@@ -0,0 +1,69 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.mdharr.hogwartsartifactsonline.artifact.utils.IdWorker;
+import com.mdharr.hogwartsartifactsonline.system.ExistingIdFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+
+/**
+ * Ids of existing artifacts, so GET /artifacts/{artifactId} with a made-up id is a 404 without a query.
+ * ArtifactService records the misses and adds the ids it saves.
+ * <p>
+ * An artifact id is positioned by the millisecond IdWorker minted it in, on whichever node. Ids minted less than
+ * id-filter.in-flight-window before a rebuild started, or later, may belong to rows that rebuild could not see and
+ * always reach the database. Ids that do not parse, or claim to be minted further in the future than that window,
+ * were not minted by any node.
+ */
+@Component
+public class ArtifactIdFilter extends ExistingIdFilter<String> {
+
+    private final long inFlightMillis;
+
+    public ArtifactIdFilter(ArtifactRepository artifactRepository,
+                            @Value("${id-filter.expected-ids}") long expectedIds,
+                            @Value("${id-filter.false-positive-rate}") double falsePositiveRate,
+                            @Value("${id-filter.maximum-misses}") long maximumMisses,
+                            @Value("${id-filter.miss-time-to-live}") Duration missTimeToLive,
+                            @Value("${id-filter.in-flight-window}") Duration inFlightWindow,
+                            MeterRegistry meterRegistry) {
+        super("artifact", artifactRepository::streamIds, expectedIds, falsePositiveRate, maximumMisses, missTimeToLive, meterRegistry);
+        this.inFlightMillis = inFlightWindow.toMillis();
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${id-filter.rebuild-interval}", fixedDelayString = "${id-filter.rebuild-interval}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        super.rebuild();
+    }
+
+    @Override
+    protected long position(String artifactId) {
+        long id;
+        try {
+            id = Long.parseLong(artifactId);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (id < 0) {
+            return -1;
+        }
+        long mintedAt = IdWorker.timestampOf(id);
+        return mintedAt <= System.currentTimeMillis() + this.inFlightMillis ? mintedAt : -1;
+    }
+
+    @Override
+    protected long indexedUpTo(long rebuildStartedAt, long highestPosition) {
+        // Covers inserts that minted their ids before the rebuild started but committed after it read the table,
+        // and clocks of other nodes running behind ours.
+        return rebuildStartedAt - this.inFlightMillis;
+    }
+}
@@ -0,0 +1,128 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.mdharr.hogwartsartifactsonline.artifact.converter.ArtifactDtoToArtifactConverter;
+import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
+import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactImportResult;
+import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactImportSummary;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports many artifacts at once for POST /artifacts/batch. Each item is validated on its own, and the valid ones are
+ * saved in chunks of artifact-import.chunk-size, one transaction and one id block per chunk. An invalid item or a
+ * failed chunk does not stop the rest, so the summary lists a result for every item, in order.
+ * <p>
+ * Unlike the other services, this one is not @Transactional: every chunk commits or rolls back on its own through
+ * ArtifactService.saveAll(), and a failed chunk must not mark a surrounding transaction as rollback-only.
+ */
+@Service
+public class ArtifactImportService {
+
+    private final ArtifactService artifactService;
+
+    private final ArtifactDtoToArtifactConverter artifactDtoToArtifactConverter;
+
+    private final Validator validator;
+
+    private final int chunkSize;
+
+    public ArtifactImportService(ArtifactService artifactService,
+                                 ArtifactDtoToArtifactConverter artifactDtoToArtifactConverter,
+                                 Validator validator,
+                                 @Value("${artifact-import.chunk-size}") int chunkSize) {
+        this.artifactService = artifactService;
+        this.artifactDtoToArtifactConverter = artifactDtoToArtifactConverter;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Starts an import. Items are added as they are read, so a full chunk is saved before the rest has arrived.
+     *
+     * @return
+     */
+    public ArtifactImport begin() {
+        return new ArtifactImport();
+    }
+
+    /**
+     * One import in progress. Not thread-safe: it belongs to the request that began it.
+     */
+    public class ArtifactImport {
+
+        private final List<ArtifactImportResult> results = new ArrayList<>();
+
+        private final List<Integer> pendingIndexes = new ArrayList<>();
+
+        private final List<Artifact> pendingArtifacts = new ArrayList<>();
+
+        private ArtifactImport() {
+        }
+
+        public void add(ArtifactDto artifactDto) {
+            if (artifactDto == null) {
+                fail(Map.of("json", "An artifact is required."));
+                return;
+            }
+            Set<ConstraintViolation<ArtifactDto>> violations = validator.validate(artifactDto);
+            if (!violations.isEmpty()) {
+                Map<String, String> errors = new HashMap<>(violations.size());
+                violations.forEach(violation -> errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+                fail(errors);
+                return;
+            }
+            this.pendingIndexes.add(this.results.size());
+            this.pendingArtifacts.add(artifactDtoToArtifactConverter.convert(artifactDto));
+            this.results.add(null); // Filled in when the chunk is saved.
+            if (this.pendingArtifacts.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Records an item that could not even be read, e.g. a line that is not valid JSON.
+         */
+        public void fail(Map<String, String> errors) {
+            this.results.add(ArtifactImportResult.failure(this.results.size(), errors));
+        }
+
+        public ArtifactImportSummary finish() {
+            flush();
+            int imported = (int) this.results.stream().filter(ArtifactImportResult::success).count();
+            return new ArtifactImportSummary(imported, this.results.size() - imported, this.results);
+        }
+
+        private void flush() {
+            if (this.pendingArtifacts.isEmpty()) {
+                return;
+            }
+            try {
+                List<Artifact> savedArtifacts = artifactService.saveAll(this.pendingArtifacts);
+                for (int i = 0; i < savedArtifacts.size(); i++) {
+                    int index = this.pendingIndexes.get(i);
+                    this.results.set(index, ArtifactImportResult.success(index, savedArtifacts.get(i).getId()));
+                }
+            } catch (DataAccessException | PersistenceException | TransactionException e) {
+                // saveAll() flushes the EntityManager itself, so a failed insert arrives as an untranslated PersistenceException.
+                String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                for (int index : this.pendingIndexes) {
+                    this.results.set(index, ArtifactImportResult.failure(index, Map.of("artifact", "Could not be saved: " + cause)));
+                }
+            }
+            this.pendingIndexes.clear();
+            this.pendingArtifacts.clear();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.mdharr.hogwartsartifactsonline.system.Validators;
+
+import java.util.Map;
+
+/**
+ * The requested subset of an ArtifactDto, keyed by property name, with the Validators of the row it was read from.
+ * Properties that were not requested are absent from the map, so they are not serialized either.
+ * The id is always there for paging, even when it is not among the fields.
+ */
+public record ArtifactProjection(String id, Map<String, Object> fields, Validators validators) {
+}
@@ -1,8 +1,96 @@
 package com.mdharr.hogwartsartifactsonline.artifact;
 
+import com.mdharr.hogwartsartifactsonline.wizard.Wizard;
+import com.mdharr.hogwartsartifactsonline.wizard.WizardArtifactCount;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface ArtifactRepository extends JpaRepository<Artifact, String> {
+
+    // The owner is fetched in the same query, instead of one extra select per distinct owner.
+    @Override
+    @EntityGraph(attributePaths = "owner")
+    List<Artifact> findAll();
+
+    // Keyset pagination: the first page, ordered by id. The owner is fetched in the same query.
+    @EntityGraph(attributePaths = "owner")
+    List<Artifact> findAllByOrderByIdAsc(Limit limit);
+
+    // Keyset pagination: every page after the first one seeks past the last id of the previous page.
+    @EntityGraph(attributePaths = "owner")
+    List<Artifact> findByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+    // Loads search hits with their owners in one query. The order is not kept.
+    @EntityGraph(attributePaths = "owner")
+    List<Artifact> findByIdIn(Collection<String> ids);
+
+    // Streams every artifact for the export, reading rows from the JDBC cursor in batches instead of materializing a list.
+    // The returned Stream must be consumed inside a transaction and closed.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select a from Artifact a left join fetch a.owner order by a.id")
+    Stream<Artifact> streamAllByOrderByIdAsc();
+
+    // Streams the indexed columns for ArtifactSearchIndex.rebuild(). No entities are loaded, so neither the heap nor the
+    // second-level cache fills up with the whole catalog. The returned Stream must be consumed inside a transaction and closed.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.mdharr.hogwartsartifactsonline.artifact.ArtifactSearchDocument(a.id, a.name, a.description) from Artifact a")
+    Stream<ArtifactSearchDocument> streamSearchDocuments();
+
+    // Streams every id for ArtifactIdFilter.rebuild(). The returned Stream must be consumed inside a transaction and closed.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select a.id from Artifact a")
+    Stream<String> streamIds();
+
+    @Query("select a.id from Artifact a where a.owner.id = :ownerId")
+    List<String> findIdsByOwnerId(@Param("ownerId") Integer ownerId);
+
+    @Query("select a.id from Artifact a where a.id in :ids")
+    List<String> findExistingIds(@Param("ids") Collection<String> ids);
+
+    @Query("select distinct a.owner.id from Artifact a where a.id in :ids and a.owner is not null")
+    List<Integer> findOwnerIds(@Param("ids") Collection<String> ids);
+
+    // Every artifact owned by the given wizard, or by any current owner of the given artifacts.
+    @Query("select a.id from Artifact a where a.owner.id = :ownerId or a.owner.id in (select b.owner.id from Artifact b where b.id in :ids)")
+    List<String> findIdsSharingOwnerWith(@Param("ids") Collection<String> ids, @Param("ownerId") Integer ownerId);
+
+    // One set-based UPDATE of owner_id. Managed artifacts and wizards would be stale afterwards, so the persistence context is cleared.
+    // Versions are bumped as well, so a concurrent assignArtifact of the same artifacts fails its version check and retries.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Artifact a set a.owner = :owner, a.version = a.version + 1, a.lastModified = :now where a.id in :ids")
+    int assignOwner(@Param("owner") Wizard owner, @Param("ids") Collection<String> ids, @Param("now") Instant now);
+
+    default int assignOwner(Wizard owner, Collection<String> ids) {
+        return assignOwner(owner, ids, Instant.now());
+    }
+
+    // Unassigns every artifact of a wizard with one UPDATE, instead of loading the collection and nulling each owner.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Artifact a set a.owner = null, a.version = a.version + 1, a.lastModified = :now where a.owner.id = :ownerId")
+    int unassignOwner(@Param("ownerId") Integer ownerId, @Param("now") Instant now);
+
+    default int unassignOwner(Integer ownerId) {
+        return unassignOwner(ownerId, Instant.now());
+    }
+
+    // Wizards that own no artifacts do not show up in the result.
+    @Query("select a.owner.id as wizardId, count(a) as numberOfArtifacts from Artifact a where a.owner.id in :wizardIds group by a.owner.id")
+    List<WizardArtifactCount> countByOwnerIds(@Param("wizardIds") Collection<Integer> wizardIds);
 }
@@ -0,0 +1,7 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+/**
+ * The columns ArtifactSearchIndex indexes, read without loading Artifact entities or their owners.
+ */
+public record ArtifactSearchDocument(String id, String name, String description) {
+}
@@ -0,0 +1,271 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-process inverted index over Artifact.name and Artifact.description, for GET /artifacts/search.
+ * <p>
+ * Terms are kept sorted, so a query term matches every indexed term it is a prefix of. Every query term must match,
+ * and results are ranked by a TF-IDF score where name matches count more than description matches and exact
+ * matches count more than prefix matches.
+ * <p>
+ * The index is built from the database once the application is ready, and ArtifactService keeps it current.
+ * Changes made inside a transaction are applied only after it commits, so rolled back writes never show up in results.
+ * It is rebuilt every search-index.rebuild-interval as well, which picks up artifacts written by other nodes.
+ * Changes applied while a rebuild reads the database are replayed on top of what it read, so none are lost.
+ */
+@Component
+public class ArtifactSearchIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final float NAME_WEIGHT = 3f;
+
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+
+    private final ArtifactRepository artifactRepository;
+
+    // term -> artifact id -> weighted term frequency
+    private final NavigableMap<String, Map<String, Float>> postings = new TreeMap<>();
+
+    // artifact id -> its terms, so an update or delete can remove the old postings
+    private final Map<String, Set<String>> termsByArtifactId = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // One rebuild at a time.
+    private final Lock rebuildLock = new ReentrantLock();
+
+    // Changes applied while a rebuild is reading artifacts, null otherwise. Guarded by the write lock.
+    private List<Runnable> changesDuringRebuild;
+
+    public ArtifactSearchIndex(ArtifactRepository artifactRepository) {
+        this.artifactRepository = artifactRepository;
+    }
+
+    /**
+     * Reads the indexed columns of every artifact from a streamed projection, inside a read-only transaction that keeps
+     * the cursor open, and swaps the result in.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${search-index.rebuild-interval}", fixedDelayString = "${search-index.rebuild-interval}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        this.rebuildLock.lock();
+        try {
+            this.lock.writeLock().lock();
+            try {
+                this.changesDuringRebuild = new ArrayList<>();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            Map<String, Map<String, Float>> documents = null;
+            try {
+                Map<String, Map<String, Float>> read = new HashMap<>();
+                try (Stream<ArtifactSearchDocument> rows = this.artifactRepository.streamSearchDocuments()) {
+                    rows.forEach(row -> read.put(row.id(), termFrequencies(row.name(), row.description())));
+                }
+                documents = read;
+            } finally {
+                this.lock.writeLock().lock();
+                try {
+                    List<Runnable> changes = this.changesDuringRebuild;
+                    this.changesDuringRebuild = null;
+                    if (documents != null) {
+                        this.postings.clear();
+                        this.termsByArtifactId.clear();
+                        documents.forEach(this::put);
+                        // They may have been committed after the database was read. Replaying one that was not is harmless.
+                        changes.forEach(Runnable::run);
+                    }
+                } finally {
+                    this.lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            this.rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Adds the artifact, or replaces what was indexed for it before. Name and description are read right away.
+     */
+    public void index(Artifact artifact) {
+        Map<String, Float> frequencies = termFrequencies(artifact);
+        String artifactId = artifact.getId();
+        afterCommit(() -> put(artifactId, frequencies));
+    }
+
+    public void index(Collection<Artifact> artifacts) {
+        Map<String, Map<String, Float>> documents = new HashMap<>();
+        artifacts.forEach(artifact -> documents.put(artifact.getId(), termFrequencies(artifact)));
+        afterCommit(() -> documents.forEach(this::put));
+    }
+
+    public void remove(String artifactId) {
+        afterCommit(() -> {
+            this.lock.writeLock().lock();
+            try {
+                removeTerms(artifactId);
+                if (this.changesDuringRebuild != null) {
+                    this.changesDuringRebuild.add(() -> removeTerms(artifactId));
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Returns the ids of the best matching artifacts, best first.
+     *
+     * @param query free text; punctuation and case are ignored
+     * @param limit the maximum number of ids to return
+     * @return
+     */
+    public List<String> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        Map<String, Float> scores = null;
+        this.lock.readLock().lock();
+        try {
+            int numberOfArtifacts = this.termsByArtifactId.size();
+            for (String queryTerm : queryTerms) {
+                Map<String, Float> termScores = score(queryTerm, numberOfArtifacts);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // Every query term has to match.
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((artifactId, score) -> score + termScores.get(artifactId));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Float>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // For each artifact, the best score among the indexed terms that start with the query term.
+    private Map<String, Float> score(String queryTerm, int numberOfArtifacts) {
+        Map<String, Float> scores = new HashMap<>();
+        for (Map.Entry<String, Map<String, Float>> entry : this.postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+            Map<String, Float> termPostings = entry.getValue();
+            float idf = (float) Math.log(1 + (double) numberOfArtifacts / termPostings.size());
+            float matchFactor = entry.getKey().length() == queryTerm.length() ? 1f : PREFIX_MATCH_FACTOR;
+            termPostings.forEach((artifactId, frequency) ->
+                    scores.merge(artifactId, frequency * idf * matchFactor, Math::max));
+        }
+        return scores;
+    }
+
+    // Replaces whatever was indexed for the artifact before.
+    private void put(String artifactId, Map<String, Float> frequencies) {
+        this.lock.writeLock().lock();
+        try {
+            removeTerms(artifactId);
+            frequencies.forEach((term, frequency) -> this.postings.computeIfAbsent(term, t -> new HashMap<>()).put(artifactId, frequency));
+            this.termsByArtifactId.put(artifactId, frequencies.keySet());
+            if (this.changesDuringRebuild != null) {
+                this.changesDuringRebuild.add(() -> put(artifactId, frequencies));
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void removeTerms(String artifactId) {
+        this.lock.writeLock().lock();
+        try {
+            Set<String> terms = this.termsByArtifactId.remove(artifactId);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                Map<String, Float> termPostings = this.postings.get(term);
+                termPostings.remove(artifactId);
+                if (termPostings.isEmpty()) {
+                    this.postings.remove(term);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private static Map<String, Float> termFrequencies(Artifact artifact) {
+        return termFrequencies(artifact.getName(), artifact.getDescription());
+    }
+
+    private static Map<String, Float> termFrequencies(String name, String description) {
+        Map<String, Float> frequencies = new HashMap<>();
+        tokenize(name).forEach(term -> frequencies.merge(term, NAME_WEIGHT, Float::sum));
+        tokenize(description).forEach(term -> frequencies.merge(term, DESCRIPTION_WEIGHT, Float::sum));
+        return frequencies;
+    }
+
+    // Lower case, without accents, split on anything that is not a letter or a digit. "Gryffindor's" gives "gryffindor" and "s".
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
@@ -1,38 +1,309 @@
 package com.mdharr.hogwartsartifactsonline.artifact;
 
 import com.mdharr.hogwartsartifactsonline.artifact.utils.IdWorker;
+import com.mdharr.hogwartsartifactsonline.system.CursorPage;
+import com.mdharr.hogwartsartifactsonline.system.Validators;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
-import jakarta.transaction.Transactional;
+import com.mdharr.hogwartsartifactsonline.wizard.WizardArtifactCount;
+import com.mdharr.hogwartsartifactsonline.wizard.WizardRepository;
+import com.mdharr.hogwartsartifactsonline.wizard.WizardService;
+import com.mdharr.hogwartsartifactsonline.wizard.dto.WizardDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+// Spring's @Transactional rather than jakarta's, which has no readOnly for exportAll().
 @Service
 @Transactional
 public class ArtifactService {
 
     private final ArtifactRepository artifactRepository;
 
+    private final WizardRepository wizardRepository;
+
+    private final WizardService wizardService;
+
     private final IdWorker idWorker;
 
-    public ArtifactService(ArtifactRepository artifactRepository, IdWorker idWorker) {
+    private final EntityManager entityManager;
+
+    private final ArtifactDtoCache artifactDtoCache;
+
+    private final ArtifactSearchIndex artifactSearchIndex;
+
+    private final ArtifactIdFilter artifactIdFilter;
+
+    // How many exported rows we hand out per chunk: their owners' counts are loaded together, then the persistence context is cleared.
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
+    public ArtifactService(ArtifactRepository artifactRepository, WizardRepository wizardRepository, WizardService wizardService, IdWorker idWorker, EntityManager entityManager, ArtifactDtoCache artifactDtoCache, ArtifactSearchIndex artifactSearchIndex, ArtifactIdFilter artifactIdFilter) {
         this.artifactRepository = artifactRepository;
+        this.wizardRepository = wizardRepository;
+        this.wizardService = wizardService;
         this.idWorker = idWorker;
+        this.entityManager = entityManager;
+        this.artifactDtoCache = artifactDtoCache;
+        this.artifactSearchIndex = artifactSearchIndex;
+        this.artifactIdFilter = artifactIdFilter;
     }
 
     public Artifact findById(String artifactId) {
+        if (!this.artifactIdFilter.mightExist(artifactId)) {
+            throw new ObjectNotFoundException("artifact", artifactId);
+        }
         return this.artifactRepository.findById(artifactId)
-                .orElseThrow(() -> new ObjectNotFoundException("artifact", artifactId));
+                .orElseThrow(() -> {
+                    this.artifactIdFilter.recordMiss(artifactId);
+                    return new ObjectNotFoundException("artifact", artifactId);
+                });
     }
 
     public List<Artifact> findAll() {
-        return this.artifactRepository.findAll();
+        List<Artifact> artifacts = this.artifactRepository.findAll();
+        this.loadOwnerNumberOfArtifacts(artifacts);
+        return artifacts;
+    }
+
+    /**
+     * Returns the page of artifacts whose ids come right after the given cursor, ordered by id.
+     * We ask the database for one row more than the page size, so we know whether there is a next page
+     * without running a count query.
+     *
+     * @param cursor the last id of the previous page, or null for the first page
+     * @param size the page size
+     * @return
+     */
+    public CursorPage<Artifact> findPage(String cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<Artifact> artifacts = cursor == null || cursor.isBlank()
+                ? this.artifactRepository.findAllByOrderByIdAsc(limit)
+                : this.artifactRepository.findByIdGreaterThanOrderByIdAsc(cursor, limit);
+        this.loadOwnerNumberOfArtifacts(artifacts);
+        if (artifacts.size() <= size) {
+            return new CursorPage<>(artifacts, size, null);
+        }
+        List<Artifact> content = artifacts.subList(0, size);
+        return new CursorPage<>(content, size, content.get(size - 1).getId());
+    }
+
+    /**
+     * Like findById(String), but selects only the columns of the given fields, and joins the owner only when it is asked for.
+     *
+     * @param artifactId
+     * @param fields
+     * @return
+     */
+    public ArtifactProjection findById(String artifactId, Set<ArtifactField> fields) {
+        if (!this.artifactIdFilter.mightExist(artifactId)) {
+            throw new ObjectNotFoundException("artifact", artifactId);
+        }
+        List<ArtifactProjection> projections = findProjections(fields, artifactId, null, null);
+        if (projections.isEmpty()) {
+            this.artifactIdFilter.recordMiss(artifactId);
+            throw new ObjectNotFoundException("artifact", artifactId);
+        }
+        return projections.get(0);
+    }
+
+    /**
+     * Like findPage(String, int), but selects only the columns of the given fields.
+     */
+    public CursorPage<ArtifactProjection> findPage(String cursor, int size, Set<ArtifactField> fields) {
+        List<ArtifactProjection> projections = findProjections(fields, null, cursor == null || cursor.isBlank() ? null : cursor, size + 1);
+        if (projections.size() <= size) {
+            return new CursorPage<>(projections, size, null);
+        }
+        List<ArtifactProjection> content = projections.subList(0, size);
+        return new CursorPage<>(content, size, content.get(size - 1).id());
+    }
+
+    /**
+     * Like findAll(), but selects only the columns of the given fields.
+     */
+    public List<ArtifactProjection> findAll(Set<ArtifactField> fields) {
+        return findProjections(fields, null, null, null);
+    }
+
+    /**
+     * Reads only the requested columns, ordered by id, with one query plus one GROUP BY count when the owner is requested.
+     * The id, version and lastModified are always read: they are needed for the cursor and the Validators.
+     */
+    private List<ArtifactProjection> findProjections(Set<ArtifactField> fields, String artifactId, String afterId, Integer maxResults) {
+        boolean withOwner = fields.contains(ArtifactField.OWNER);
+        StringBuilder jpql = new StringBuilder("select a.id, a.version, a.lastModified");
+        for (ArtifactField field : fields) {
+            if (field == ArtifactField.OWNER) {
+                jpql.append(", o.id, o.name, o.version, o.lastModified");
+            } else if (field != ArtifactField.ID) {
+                jpql.append(", ").append(field.getColumn());
+            }
+        }
+        jpql.append(" from Artifact a");
+        if (withOwner) {
+            jpql.append(" left join a.owner o");
+        }
+        if (artifactId != null) {
+            jpql.append(" where a.id = :artifactId");
+        } else if (afterId != null) {
+            jpql.append(" where a.id > :afterId");
+        }
+        jpql.append(" order by a.id");
+
+        TypedQuery<Object[]> query = this.entityManager.createQuery(jpql.toString(), Object[].class);
+        if (artifactId != null) {
+            query.setParameter("artifactId", artifactId);
+        } else if (afterId != null) {
+            query.setParameter("afterId", afterId);
+        }
+        if (maxResults != null) {
+            query.setMaxResults(maxResults);
+        }
+        List<Object[]> rows = query.getResultList();
+
+        Map<Integer, Long> numberOfArtifacts = Map.of();
+        if (withOwner) {
+            List<Integer> ownerIds = rows.stream().map(row -> (Integer) row[ownerColumn(fields)]).filter(Objects::nonNull).distinct().toList();
+            numberOfArtifacts = ownerIds.isEmpty() ? Map.of() : this.artifactRepository.countByOwnerIds(ownerIds).stream()
+                    .collect(Collectors.toMap(WizardArtifactCount::getWizardId, WizardArtifactCount::getNumberOfArtifacts));
+        }
+
+        List<ArtifactProjection> projections = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            Validators validators = Validators.of((Instant) row[2], row[1]);
+            int column = 3;
+            for (ArtifactField field : fields) {
+                if (field == ArtifactField.ID) {
+                    values.put(field.getJsonName(), row[0]);
+                } else if (field == ArtifactField.OWNER) {
+                    Integer ownerId = (Integer) row[column];
+                    values.put(field.getJsonName(), ownerId == null ? null
+                            : new WizardDto(ownerId, (String) row[column + 1], numberOfArtifacts.getOrDefault(ownerId, 0L).intValue()));
+                    if (ownerId != null) {
+                        // The owner is part of the response, so its version is part of the ETag, as in ArtifactController.
+                        validators = Validators.of(Validators.latest((Instant) row[2], (Instant) row[column + 3]), row[1], ownerId, row[column + 2]);
+                    }
+                    column += 4;
+                } else {
+                    values.put(field.getJsonName(), row[column++]);
+                }
+            }
+            projections.add(new ArtifactProjection((String) row[0], values, validators));
+        }
+        return projections;
+    }
+
+    // Where o.id lands in the select list built by findProjections().
+    private static int ownerColumn(Set<ArtifactField> fields) {
+        int column = 3;
+        for (ArtifactField field : fields) {
+            if (field == ArtifactField.OWNER) {
+                return column;
+            }
+            if (field != ArtifactField.ID) {
+                column++;
+            }
+        }
+        throw new IllegalArgumentException("The owner is not among the fields.");
+    }
+
+    /**
+     * Finds artifacts whose name or description contain every word of the query, or words starting with it, best match first.
+     * The matching and ranking happen in ArtifactSearchIndex; only the matched rows are loaded, with their owners, in one query.
+     *
+     * @param query
+     * @param limit the maximum number of artifacts to return
+     * @return
+     */
+    public List<Artifact> search(String query, int limit) {
+        List<String> artifactIds = this.artifactSearchIndex.search(query, limit);
+        if (artifactIds.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Artifact> artifactsById = this.artifactRepository.findByIdIn(artifactIds).stream()
+                .collect(Collectors.toMap(Artifact::getId, artifact -> artifact));
+        // Keep the index's ranking. An id can be missing when its artifact was deleted after the index was searched.
+        List<Artifact> artifacts = artifactIds.stream().map(artifactsById::get).filter(Objects::nonNull).toList();
+        this.loadOwnerNumberOfArtifacts(artifacts);
+        return artifacts;
+    }
+
+    /**
+     * Hands every artifact, ordered by id, to the given consumer one at a time.
+     * Rows are read in chunks of EXPORT_CHUNK_SIZE. The owners' numberOfArtifacts are loaded with one GROUP BY query
+     * per chunk, and the persistence context is cleared after each chunk to keep memory use flat, so the consumer
+     * must finish with each artifact before it returns.
+     *
+     * @param consumer
+     */
+    @Transactional(readOnly = true)
+    public void exportAll(Consumer<Artifact> consumer) {
+        try (Stream<Artifact> artifacts = this.artifactRepository.streamAllByOrderByIdAsc()) {
+            List<Artifact> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+            for (Iterator<Artifact> iterator = artifacts.iterator(); iterator.hasNext(); ) {
+                chunk.add(iterator.next());
+                if (chunk.size() == EXPORT_CHUNK_SIZE) {
+                    exportChunk(chunk, consumer);
+                }
+            }
+            exportChunk(chunk, consumer);
+        }
+    }
+
+    private void exportChunk(List<Artifact> chunk, Consumer<Artifact> consumer) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        this.loadOwnerNumberOfArtifacts(chunk);
+        chunk.forEach(consumer);
+        chunk.clear();
+        this.entityManager.clear();
+    }
+
+    private void loadOwnerNumberOfArtifacts(List<Artifact> artifacts) {
+        this.wizardService.loadNumberOfArtifacts(artifacts.stream().map(Artifact::getOwner).toList());
     }
 
     public Artifact save(Artifact newArtifact) {
         newArtifact.setId(idWorker.nextId() + "");
-        return this.artifactRepository.save(newArtifact);
+        Artifact savedArtifact = this.artifactRepository.save(newArtifact);
+        this.artifactSearchIndex.index(savedArtifact);
+        this.artifactIdFilter.add(savedArtifact.getId());
+        return savedArtifact;
+    }
+
+    /**
+     * Inserts new artifacts in one transaction. Ids are reserved from IdWorker a block at a time, and the rows are
+     * persisted and flushed together, so Hibernate sends them as JDBC batches of hibernate.jdbc.batch_size.
+     * We call persist() rather than save(): with an assigned id, save() would merge and run a SELECT per artifact.
+     * Since this flushes the EntityManager itself, a rejected insert throws an untranslated PersistenceException.
+     *
+     * @param newArtifacts artifacts without ids; they are detached when this returns
+     * @return the same artifacts, with their new ids
+     */
+    public List<Artifact> saveAll(List<Artifact> newArtifacts) {
+        for (int from = 0; from < newArtifacts.size(); from += IdWorker.maxBlockSize) {
+            int to = Math.min(from + IdWorker.maxBlockSize, newArtifacts.size());
+            long[] ids = this.idWorker.nextIds(to - from);
+            for (int i = from; i < to; i++) {
+                Artifact newArtifact = newArtifacts.get(i);
+                newArtifact.setId(Long.toString(ids[i - from]));
+                this.entityManager.persist(newArtifact);
+            }
+        }
+        this.entityManager.flush();
+        this.entityManager.clear();
+        this.artifactSearchIndex.index(newArtifacts);
+        this.artifactIdFilter.add(newArtifacts.stream().map(Artifact::getId).toList());
+        return newArtifacts;
     }
 
     public Artifact update(String artifactId, Artifact updatedArtifact) {
@@ -42,16 +313,27 @@ public class ArtifactService {
                     oldArtifact.setDescription(updatedArtifact.getDescription());
                     oldArtifact.setImageUrl(updatedArtifact.getImageUrl());
 
-                    return this.artifactRepository.save(oldArtifact);
+                    this.artifactDtoCache.evict(artifactId);
+                    Artifact savedArtifact = this.artifactRepository.save(oldArtifact);
+                    this.artifactSearchIndex.index(savedArtifact);
+                    return savedArtifact;
                 })
                 .orElseThrow(() -> new ObjectNotFoundException("artifact", artifactId));
 
     }
 
     public void delete(String artifactId) {
-        this.artifactRepository.findById(artifactId)
+        Artifact artifactToBeDeleted = this.artifactRepository.findById(artifactId)
                 .orElseThrow(() -> new ObjectNotFoundException("artifact", artifactId));
+        // The owner's other artifacts show the owner's numberOfArtifacts, which is about to change.
+        this.artifactDtoCache.evict(artifactToBeDeleted.getOwner() != null
+                ? this.artifactRepository.findIdsByOwnerId(artifactToBeDeleted.getOwner().getId())
+                : List.of(artifactId));
         this.artifactRepository.deleteById(artifactId);
+        if (artifactToBeDeleted.getOwner() != null) {
+            this.wizardRepository.touch(List.of(artifactToBeDeleted.getOwner().getId()), Instant.now());
+        }
+        this.artifactSearchIndex.remove(artifactId);
     }
 
 }
@@ -2,13 +2,18 @@ package com.mdharr.hogwartsartifactsonline.artifact.dto;
 
 import com.mdharr.hogwartsartifactsonline.wizard.dto.WizardDto;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 
+// The size limits match the VARCHAR(255) columns of Artifact.
 public record ArtifactDto(String id,
                          @NotEmpty(message = "name is required.")
+                         @Size(max = 255, message = "name must be at most 255 characters.")
                          String name,
                          @NotEmpty(message = "description is required.")
+                         @Size(max = 255, message = "description must be at most 255 characters.")
                          String description,
                          @NotEmpty(message = "imageUrl is required.")
+                         @Size(max = 255, message = "imageUrl must be at most 255 characters.")
                          String imageUrl,
                          WizardDto owner) {
 }
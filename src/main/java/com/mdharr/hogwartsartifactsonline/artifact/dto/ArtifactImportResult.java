@@ -0,0 +1,22 @@
+package com.mdharr.hogwartsartifactsonline.artifact.dto;
+
+import java.util.Map;
+
+/**
+ * The outcome of one item of a batch import, in the order the items were sent.
+ * On success, id is the new artifact's id. On failure, errors says why, keyed by field name,
+ * or by "json" or "artifact" when the whole item could not be read or saved.
+ */
+public record ArtifactImportResult(int index,
+                                   boolean success,
+                                   String id,
+                                   Map<String, String> errors) {
+
+    public static ArtifactImportResult success(int index, String id) {
+        return new ArtifactImportResult(index, true, id, null);
+    }
+
+    public static ArtifactImportResult failure(int index, Map<String, String> errors) {
+        return new ArtifactImportResult(index, false, null, errors);
+    }
+}
@@ -0,0 +1,8 @@
+package com.mdharr.hogwartsartifactsonline.artifact.dto;
+
+import java.util.List;
+
+public record ArtifactImportSummary(int imported,
+                                    int failed,
+                                    List<ArtifactImportResult> results) {
+}
@@ -1,12 +1,18 @@
 package com.mdharr.hogwartsartifactsonline.artifact.utils;
 
-import java.lang.management.ManagementFactory;
-import java.net.InetAddress;
-import java.net.NetworkInterface;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * This piece of code is from the Internet. The quality is unknown.
- * Only for demoing purpose. Use with caution!
+ * Snowflake style id generator: 41 bits of milliseconds since twepoch, 5 bits of datacenter id, 5 bits of worker id
+ * and a 12-bit sequence within the millisecond.
+ * <p>
+ * The millisecond and the number of sequences already handed out in it live in a single state word that is updated
+ * with compare-and-set, so concurrent callers never block on a monitor. When a millisecond runs out of sequences,
+ * callers park briefly until the clock moves on instead of busy-spinning.
+ * <p>
+ * Every running node needs its own (workerId, datacenterId) pair, see NodeIdentityService.
  */
 public class IdWorker {
 
@@ -30,20 +36,24 @@ public class IdWorker {
 
     private final static long sequenceMask = -1L ^ (-1L << sequenceBits);
 
-    private static long lastTimestamp = -1L;
+    // Number of ids available in one millisecond, also the largest block nextIds() can reserve.
+    public final static int maxBlockSize = (int) sequenceMask + 1;
 
-    private long sequence = 0L;
+    // The state word keeps the number of used sequences (0..4096) in its low 13 bits and the timestamp above them.
+    private final static long usedBits = sequenceBits + 1;
+
+    private final static long usedMask = -1L ^ (-1L << usedBits);
+
+    // How long to park when the current millisecond has no sequences left. Bounded, so we re-check the clock soon.
+    private final static long parkNanos = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final AtomicLong state = new AtomicLong(-1L & ~usedMask);
 
     private final long workerId;
 
     private final long datacenterId;
 
 
-    public IdWorker() {
-        this.datacenterId = getDatacenterId(maxDatacenterId);
-        this.workerId = getMaxWorkerId(datacenterId, maxWorkerId);
-    }
-
     public IdWorker(long workerId, long datacenterId) {
         if (workerId > maxWorkerId || workerId < 0) {
             throw new IllegalArgumentException(String.format("worker Id can't be greater than %d or less than 0", maxWorkerId));
@@ -55,65 +65,73 @@ public class IdWorker {
         this.datacenterId = datacenterId;
     }
 
-    public synchronized long nextId() {
-        long timestamp = timeGen();
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException(String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
-        }
-        if (lastTimestamp == timestamp) {
-            sequence = (sequence + 1) & sequenceMask;
-            if (sequence == 0) {
-                timestamp = tilNextMillis(lastTimestamp);
-            }
-        } else {
-            sequence = 0L;
-        }
-        lastTimestamp = timestamp;
-        long nextId = ((timestamp - twepoch) << timestampLeftShift)
-                | (datacenterId << datacenterIdShift)
-                | (workerId << workerIdShift) | sequence;
-        return nextId;
+    public long nextId() {
+        return reserve(1);
     }
 
-    private long tilNextMillis(final long lastTimestamp) {
-        long timestamp = this.timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = this.timeGen();
+    /**
+     * Reserves n ids in one step. The ids share the same millisecond and have consecutive sequences,
+     * so the returned block is contiguous and ascending.
+     *
+     * @param n the number of ids, between 1 and maxBlockSize
+     * @return
+     */
+    public long[] nextIds(int n) {
+        if (n < 1 || n > maxBlockSize) {
+            throw new IllegalArgumentException(String.format("block size can't be greater than %d or less than 1", maxBlockSize));
+        }
+        long firstId = reserve(n);
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = firstId + i;
         }
-        return timestamp;
+        return ids;
     }
 
-    private long timeGen() {
-        return System.currentTimeMillis();
+    /**
+     * Returns the millisecond of the newest id handed out, or -1 before the first one.
+     */
+    public long getLastTimestamp() {
+        return this.state.get() >> usedBits;
     }
 
-    protected static long getMaxWorkerId(long datacenterId, long maxWorkerId) {
-        StringBuffer mpid = new StringBuffer();
-        mpid.append(datacenterId);
-        String name = ManagementFactory.getRuntimeMXBean().getName();
-        if (!name.isEmpty()) {
-            mpid.append(name.split("@")[0]); // GET jvmPid
-        }
-        return (mpid.toString().hashCode() & 0xffff) % (maxWorkerId + 1);
+    /**
+     * Returns the millisecond the given id was minted in, by any node.
+     */
+    public static long timestampOf(long id) {
+        return (id >> timestampLeftShift) + twepoch;
     }
 
-    protected static long getDatacenterId(long maxDatacenterId) {
-        long id = 0L;
-        try {
-            InetAddress ip = InetAddress.getLocalHost();
-            NetworkInterface network = NetworkInterface.getByInetAddress(ip);
-            if (network == null) {
-                id = 1L;
-            } else {
-                byte[] mac = network.getHardwareAddress();
-                id = ((0x000000FF & (long) mac[mac.length - 1])
-                        | (0x0000FF00 & (((long) mac[mac.length - 2]) << 8))) >> 6;
-                id = id % (maxDatacenterId + 1);
+    /**
+     * Claims n consecutive sequences in the current millisecond and returns the first id.
+     */
+    private long reserve(int n) {
+        while (true) {
+            // Read the state before the clock, so a timestamp written by another thread is never newer than ours.
+            long current = this.state.get();
+            long timestamp = timeGen();
+            long lastTimestamp = current >> usedBits;
+            long used = current & usedMask;
+            if (timestamp < lastTimestamp) {
+                throw new RuntimeException(String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
+            }
+            if (timestamp > lastTimestamp) {
+                used = 0L;
+            } else if (used + n > maxBlockSize) {
+                // This millisecond is used up, wait for the next one.
+                LockSupport.parkNanos(parkNanos);
+                continue;
+            }
+            if (this.state.compareAndSet(current, (timestamp << usedBits) | (used + n))) {
+                return ((timestamp - twepoch) << timestampLeftShift)
+                        | (datacenterId << datacenterIdShift)
+                        | (workerId << workerIdShift) | used;
             }
-        } catch (Exception e) {
-            System.out.println(" getDatacenterId: " + e.getMessage());
         }
-        return id;
+    }
+
+    private long timeGen() {
+        return System.currentTimeMillis();
     }
 
 }
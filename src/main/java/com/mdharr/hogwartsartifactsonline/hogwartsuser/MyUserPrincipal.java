@@ -1,11 +1,8 @@
 package com.mdharr.hogwartsartifactsonline.hogwartsuser;
 
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.util.StringUtils;
 
-import java.util.Arrays;
 import java.util.Collection;
 
 public class MyUserPrincipal implements UserDetails {
@@ -21,9 +18,8 @@ public class MyUserPrincipal implements UserDetails {
         // Convert a user's roles from space-delimited string to a list of SimpleGrantedAuthority objects.
         // E.g., john's roles are stored in a string like "admin user moderator", we need to convert it to a list of GrantedAuthority.
         // Before conversion, we need to add this "ROLE_" prefix to each role name.
-        return Arrays.stream(StringUtils.tokenizeToStringArray(this.hogwartsUser.getRoles(), " "))
-                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                .toList();
+        // RoleRegistry does this once per distinct roles string and hands out the same immutable list afterwards.
+        return RoleRegistry.fromRoles(this.hogwartsUser.getRoles());
     }
 
     @Override
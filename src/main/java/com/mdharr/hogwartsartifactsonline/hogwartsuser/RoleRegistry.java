@@ -0,0 +1,78 @@
+package com.mdharr.hogwartsartifactsonline.hogwartsuser;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Parses space-delimited role strings into GrantedAuthority lists once, and shares the result.
+ * <p>
+ * There are only a handful of distinct role strings, e.g. "admin user", so every principal and token with the same
+ * roles gets the same immutable list, and each authority, e.g. ROLE_admin, exists only once.
+ */
+public final class RoleRegistry {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    // Roles are set by admins, so these maps stay tiny. The cap only guards against unexpected growth.
+    private static final int MAX_CACHED_STRINGS = 1024;
+
+    private static final ConcurrentMap<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, List<GrantedAuthority>> BY_ROLES = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, List<GrantedAuthority>> BY_AUTHORITIES = new ConcurrentHashMap<>();
+
+    private RoleRegistry() {
+    }
+
+    /**
+     * From a user's roles, e.g. "admin user", to [ROLE_admin, ROLE_user].
+     */
+    public static List<GrantedAuthority> fromRoles(String roles) {
+        return lookup(BY_ROLES, roles, role -> intern(ROLE_PREFIX + role));
+    }
+
+    /**
+     * From the "authorities" claim of our tokens, e.g. "ROLE_admin ROLE_user", to [ROLE_admin, ROLE_user].
+     */
+    public static List<GrantedAuthority> fromAuthorities(String authorities) {
+        return lookup(BY_AUTHORITIES, authorities, RoleRegistry::intern);
+    }
+
+    private static List<GrantedAuthority> lookup(ConcurrentMap<String, List<GrantedAuthority>> cache, String value,
+                                                 Function<String, GrantedAuthority> toAuthority) {
+        if (value == null) {
+            return List.of();
+        }
+        List<GrantedAuthority> authorities = cache.get(value);
+        if (authorities != null) {
+            return authorities;
+        }
+        authorities = List.copyOf(Arrays.stream(StringUtils.tokenizeToStringArray(value, " "))
+                .map(toAuthority)
+                .toList());
+        if (cache.size() < MAX_CACHED_STRINGS) {
+            List<GrantedAuthority> existing = cache.putIfAbsent(value, authorities);
+            return existing != null ? existing : authorities;
+        }
+        return authorities;
+    }
+
+    private static GrantedAuthority intern(String authority) {
+        GrantedAuthority grantedAuthority = AUTHORITIES.get(authority);
+        if (grantedAuthority != null) {
+            return grantedAuthority;
+        }
+        if (AUTHORITIES.size() >= MAX_CACHED_STRINGS) {
+            return new SimpleGrantedAuthority(authority);
+        }
+        return AUTHORITIES.computeIfAbsent(authority, SimpleGrantedAuthority::new);
+    }
+}
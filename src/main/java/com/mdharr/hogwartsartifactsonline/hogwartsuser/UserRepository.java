@@ -1,11 +1,20 @@
 package com.mdharr.hogwartsartifactsonline.hogwartsuser;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<HogwartsUser, Integer> {
+
+    // Runs on every HTTP Basic login. The cached result is dropped whenever the hogwarts_user table changes.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "user-by-username")
+    })
     Optional<HogwartsUser> findByUsername(String username);
 }
@@ -1,5 +1,6 @@
 package com.mdharr.hogwartsartifactsonline.hogwartsuser;
 
+import com.mdharr.hogwartsartifactsonline.security.VerifiedCredentialCache;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -18,9 +19,12 @@ public class UserService implements UserDetailsService {
 
     private PasswordEncoder passwordEncoder;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    private final VerifiedCredentialCache verifiedCredentialCache;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, VerifiedCredentialCache verifiedCredentialCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.verifiedCredentialCache = verifiedCredentialCache;
     }
 
     public List<HogwartsUser> findAll() {
@@ -49,6 +53,9 @@ public class UserService implements UserDetailsService {
     public HogwartsUser update(Integer userId, HogwartsUser update) {
         HogwartsUser foundUser = this.userRepository.findById(userId)
                 .orElseThrow(() -> new ObjectNotFoundException("user", userId));
+        // Cached logins must see the new roles and enabled flag, under the old and the new username.
+        this.verifiedCredentialCache.evict(foundUser.getUsername());
+        this.verifiedCredentialCache.evict(update.getUsername());
         foundUser.setUsername(update.getUsername());
         foundUser.setEnabled(update.isEnabled());
         foundUser.setRoles(update.getRoles());
@@ -58,6 +65,7 @@ public class UserService implements UserDetailsService {
     public void delete(Integer userId) {
         HogwartsUser foundUser = this.userRepository.findById(userId)
                 .orElseThrow(() -> new ObjectNotFoundException("user", userId));
+        this.verifiedCredentialCache.evict(foundUser.getUsername());
         this.userRepository.deleteById(userId);
     }
 
@@ -0,0 +1,44 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * A DaoAuthenticationProvider that remembers successful username and password checks in a VerifiedCredentialCache.
+ * A cache hit skips both the user lookup and the BCrypt comparison; account status checks still run.
+ */
+public class CachingDaoAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final VerifiedCredentialCache verifiedCredentialCache;
+
+    public CachingDaoAuthenticationProvider(PasswordEncoder passwordEncoder, VerifiedCredentialCache verifiedCredentialCache) {
+        super(passwordEncoder);
+        this.verifiedCredentialCache = verifiedCredentialCache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (!(credentials instanceof String presentedPassword)) {
+            return super.authenticate(authentication);
+        }
+
+        UserDetails verifiedUser = this.verifiedCredentialCache.getVerifiedUser(username, presentedPassword);
+        if (verifiedUser != null) {
+            getPreAuthenticationChecks().check(verifiedUser);
+            getPostAuthenticationChecks().check(verifiedUser);
+            return createSuccessAuthentication(verifiedUser, authentication, verifiedUser);
+        }
+
+        long evictionStamp = this.verifiedCredentialCache.evictionStamp();
+        Authentication result = super.authenticate(authentication);
+        if (result.getPrincipal() instanceof UserDetails userDetails) {
+            this.verifiedCredentialCache.put(userDetails, presentedPassword, evictionStamp);
+        }
+        return result;
+    }
+}
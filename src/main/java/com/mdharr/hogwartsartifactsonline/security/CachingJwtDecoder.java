@@ -0,0 +1,134 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Remembers tokens that already passed signature and claim validation, so a client sending the same bearer token
+ * again skips the signature check and the authorities parsing.
+ * <p>
+ * Entries are keyed by a SHA-256 digest of the token, never the token itself, and live until the token's exp.
+ * Tokens without exp and tokens that fail validation are never cached.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter;
+
+    private final Clock clock;
+
+    private final Cache<ByteBuffer, DecodedJwt> cache;
+
+    private final Timer verificationTimer;
+
+    private final Counter verificationTimeSaved;
+
+    public CachingJwtDecoder(JwtDecoder delegate, Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter,
+                             long maximumSize, MeterRegistry meterRegistry) {
+        this(delegate, authoritiesConverter, maximumSize, meterRegistry, Clock.systemUTC());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter,
+                      long maximumSize, MeterRegistry meterRegistry, Clock clock) {
+        this.delegate = delegate;
+        this.authoritiesConverter = authoritiesConverter;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<ByteBuffer, DecodedJwt>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer digest, DecodedJwt decodedJwt, long currentTime) {
+                        return Math.max(0L, Duration.between(clock.instant(), decodedJwt.jwt().getExpiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer digest, DecodedJwt decodedJwt, long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, decodedJwt, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer digest, DecodedJwt decodedJwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "decodedJwts");
+        Gauge.builder("cache.hit.ratio", this.cache, cache -> cache.stats().hitRate())
+                .tag("cache", "decodedJwts")
+                .register(meterRegistry);
+        this.verificationTimer = Timer.builder("jwt.verification")
+                .description("Time spent decoding and validating a bearer token that was not cached")
+                .register(meterRegistry);
+        this.verificationTimeSaved = Counter.builder("jwt.verification.time.saved")
+                .description("Decoding and validation time skipped thanks to cache hits")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        ByteBuffer digest = digest(token);
+        DecodedJwt decodedJwt = this.cache.getIfPresent(digest);
+        if (decodedJwt != null) {
+            // A hit saves about as long as the miss that filled the entry took.
+            this.verificationTimeSaved.increment(decodedJwt.verificationNanos() / 1e9);
+            return decodedJwt.jwt();
+        }
+
+        long start = System.nanoTime();
+        Jwt jwt = this.delegate.decode(token);
+        Collection<GrantedAuthority> authorities = List.copyOf(this.authoritiesConverter.convert(jwt));
+        long verificationNanos = System.nanoTime() - start;
+        this.verificationTimer.record(Duration.ofNanos(verificationNanos));
+
+        if (jwt.getExpiresAt() != null && this.clock.instant().isBefore(jwt.getExpiresAt())) {
+            this.cache.put(digest, new DecodedJwt(jwt, authorities, verificationNanos));
+        }
+        return jwt;
+    }
+
+    /**
+     * For JwtAuthenticationConverter. Returns the authorities built when this Jwt was decoded, if it came from here.
+     */
+    public Converter<Jwt, Collection<GrantedAuthority>> authoritiesConverter() {
+        return jwt -> {
+            // Through asMap(), so this second lookup does not count towards the hit ratio.
+            DecodedJwt decodedJwt = this.cache.asMap().get(digest(jwt.getTokenValue()));
+            return decodedJwt != null && decodedJwt.jwt() == jwt ? decodedJwt.authorities() : this.authoritiesConverter.convert(jwt);
+        };
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    private record DecodedJwt(Jwt jwt, Collection<GrantedAuthority> authorities, long verificationNanos) {
+    }
+}
@@ -0,0 +1,345 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.proc.JWSKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the keys used to sign and verify JSON Web Tokens.
+ * <p>
+ * Keys are read from a directory of PEM files (jwt.keys.directory), or from a PKCS12/JKS keystore when
+ * jwt.keys.keystore is set. Point every replica at the same files and a token issued by one node verifies on all of them.
+ * The newest key of the configured jwt.keys.algorithm signs. Older keys, of any algorithm, stay valid for
+ * jwt.keys.grace-period after a newer key replaced them, so the tokens they signed keep working until they expire.
+ * <p>
+ * In directory mode this class also rotates: once the signing key is older than jwt.keys.rotation-interval,
+ * or there is no key of the configured algorithm yet, it writes a new one and deletes retired ones.
+ * A keystore is read-only here; rotate it by replacing the file.
+ */
+@Component
+public class JwtKeyManager implements JWSKeySelector<SecurityContext> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwtKeyManager.class);
+
+    private static final String PEM_EXTENSION = ".pem";
+
+    private static final Pattern PEM_BLOCK = Pattern.compile("-----BEGIN ([A-Z ]+)-----([^-]*)-----END \\1-----");
+
+    // When a token names a kid we don't know, reload at most this often. Another replica may have just rotated.
+    private static final Duration MIN_RELOAD_INTERVAL_ON_MISS = Duration.ofSeconds(10);
+
+    private final Path keyDirectory;
+
+    private final Path keystore;
+
+    private final char[] keystorePassword;
+
+    private final JwtSigningAlgorithm algorithm;
+
+    private final Duration rotationInterval;
+
+    private final Duration gracePeriod;
+
+    private final Clock clock;
+
+    private volatile KeyRing keyRing = new KeyRing(null, List.of());
+
+    private volatile long lastReloadAt;
+
+    // Held while reading and writing key files. A lock rather than synchronized, so a virtual thread waiting on
+    // file I/O under it does not pin its carrier thread.
+    private final Lock reloadLock = new ReentrantLock();
+
+    @Autowired
+    public JwtKeyManager(@Value("${jwt.keys.directory}") String keyDirectory,
+                         @Value("${jwt.keys.keystore}") String keystore,
+                         @Value("${jwt.keys.keystore-password}") String keystorePassword,
+                         @Value("${jwt.keys.algorithm}") JwtSigningAlgorithm algorithm,
+                         @Value("${jwt.keys.rotation-interval}") Duration rotationInterval,
+                         @Value("${jwt.keys.grace-period}") Duration gracePeriod) {
+        this(Path.of(keyDirectory), StringUtils.hasText(keystore) ? Path.of(keystore) : null, keystorePassword,
+                algorithm, rotationInterval, gracePeriod, Clock.systemUTC());
+    }
+
+    JwtKeyManager(Path keyDirectory, Path keystore, String keystorePassword, JwtSigningAlgorithm algorithm,
+                  Duration rotationInterval, Duration gracePeriod, Clock clock) {
+        this.keyDirectory = keyDirectory;
+        this.keystore = keystore;
+        this.keystorePassword = keystorePassword.toCharArray();
+        this.algorithm = algorithm;
+        this.rotationInterval = rotationInterval;
+        this.gracePeriod = gracePeriod;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${jwt.keys.reload-interval}", fixedDelayString = "${jwt.keys.reload-interval}")
+    public void refresh() {
+        this.reloadLock.lock();
+        try {
+            reload();
+            if (this.keystore != null) {
+                if (this.keyRing.signingKey() == null) {
+                    throw new IllegalStateException("No " + this.algorithm + " private key found in keystore " + this.keystore);
+                }
+                return;
+            }
+            LoadedKey signingKey = this.keyRing.signingKey();
+            if (signingKey == null || !this.clock.instant().isBefore(signingKey.createdAt().plus(this.rotationInterval))) {
+                // Two replicas may both get here at once. That only leaves an extra key in the set; the newest one signs.
+                writeNewKey();
+                reload();
+            }
+        } finally {
+            this.reloadLock.unlock();
+        }
+    }
+
+    /**
+     * The key new tokens are signed with.
+     */
+    LoadedKey getSigningKey() {
+        return this.keyRing.signingKey();
+    }
+
+    /**
+     * The public halves of the current and previous keys.
+     */
+    public JWKSet getJwkSet() {
+        return new JWKSet(this.keyRing.keys().stream().map(LoadedKey::jwk).toList()).toPublicJWKSet();
+    }
+
+    /**
+     * Verification keys for jwtDecoder(), matched on the token's alg and kid. The public keys are built once
+     * per reload, not per request. Reloads once, rate-limited, when nothing matches.
+     */
+    @Override
+    public List<PublicKey> selectJWSKeys(JWSHeader header, SecurityContext context) {
+        List<PublicKey> keys = matchingKeys(header);
+        if (keys.isEmpty() && this.clock.millis() - this.lastReloadAt >= MIN_RELOAD_INTERVAL_ON_MISS.toMillis()) {
+            this.reloadLock.lock();
+            try {
+                reload();
+            } finally {
+                this.reloadLock.unlock();
+            }
+            keys = matchingKeys(header);
+        }
+        return keys;
+    }
+
+    private List<PublicKey> matchingKeys(JWSHeader header) {
+        List<PublicKey> keys = new ArrayList<>(1);
+        for (LoadedKey key : this.keyRing.keys()) {
+            if (key.algorithm().getJwsAlgorithm().equals(header.getAlgorithm())
+                    && (header.getKeyID() == null || header.getKeyID().equals(key.kid()))) {
+                keys.add(key.publicKey());
+            }
+        }
+        return keys;
+    }
+
+    private void reload() {
+        List<LoadedKey> keys = this.keystore != null ? loadKeystore() : loadDirectory();
+        keys.sort(Comparator.comparing(LoadedKey::createdAt).reversed());
+
+        Instant now = this.clock.instant();
+        List<LoadedKey> published = new ArrayList<>();
+        Instant replacedAt = null; // When the next newer key appeared, i.e. when this key stopped signing.
+        for (LoadedKey key : keys) {
+            if (replacedAt != null && now.isAfter(replacedAt.plus(this.gracePeriod))) {
+                retire(key);
+            } else {
+                published.add(key);
+            }
+            replacedAt = key.createdAt();
+        }
+
+        LoadedKey signingKey = published.stream()
+                .filter(key -> key.algorithm() == this.algorithm)
+                .findFirst()
+                .orElse(null);
+        this.keyRing = new KeyRing(signingKey, List.copyOf(published));
+        this.lastReloadAt = this.clock.millis();
+    }
+
+    private List<LoadedKey> loadDirectory() {
+        List<LoadedKey> keys = new ArrayList<>();
+        if (!Files.isDirectory(this.keyDirectory)) {
+            return keys;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.keyDirectory, "*" + PEM_EXTENSION)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String kid = fileName.substring(0, fileName.length() - PEM_EXTENSION.length());
+                try {
+                    keys.add(readPem(kid, file));
+                } catch (IOException | GeneralSecurityException | JOSEException | IllegalArgumentException e) {
+                    LOGGER.warn("Skipping unreadable JWT key file {}.", file, e);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list JWT key directory " + this.keyDirectory, e);
+        }
+        return keys;
+    }
+
+    private List<LoadedKey> loadKeystore() {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(this.keystore.toFile(), this.keystorePassword);
+            List<LoadedKey> keys = new ArrayList<>();
+            for (String alias : Collections.list(keyStore.aliases())) {
+                if (keyStore.isKeyEntry(alias) && keyStore.getKey(alias, this.keystorePassword) instanceof PrivateKey privateKey) {
+                    PublicKey publicKey = keyStore.getCertificate(alias).getPublicKey();
+                    keys.add(new LoadedKey(alias, JwtSigningAlgorithm.forKey(publicKey), publicKey, privateKey,
+                            keyStore.getCreationDate(alias).toInstant(), null));
+                }
+            }
+            return keys;
+        } catch (IOException | GeneralSecurityException | JOSEException e) {
+            throw new IllegalStateException("Cannot load JWT keys from keystore " + this.keystore, e);
+        }
+    }
+
+    private void retire(LoadedKey key) {
+        if (key.file() == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(key.file());
+            LOGGER.info("Retired JWT signing key {}.", key.kid());
+        } catch (IOException e) {
+            LOGGER.warn("Cannot delete retired JWT key file {}.", key.file(), e);
+        }
+    }
+
+    private void writeNewKey() {
+        try {
+            KeyPair keyPair = this.algorithm.generateKeyPair();
+            String kid = this.algorithm.toJwk(null, keyPair.getPublic(), keyPair.getPrivate()).computeThumbprint().toString();
+            String pem = toPem("PRIVATE KEY", keyPair.getPrivate().getEncoded()) + toPem("PUBLIC KEY", keyPair.getPublic().getEncoded());
+
+            // Write to a temporary file and move it in place, so other replicas never read half a key.
+            Files.createDirectories(this.keyDirectory);
+            Path temporaryFile = Files.createTempFile(this.keyDirectory, kid, ".tmp");
+            try {
+                Files.setPosixFilePermissions(temporaryFile, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system, keep the default permissions.
+            }
+            Files.writeString(temporaryFile, pem, StandardCharsets.US_ASCII);
+            Files.setLastModifiedTime(temporaryFile, FileTime.from(this.clock.instant()));
+            Files.move(temporaryFile, this.keyDirectory.resolve(kid + PEM_EXTENSION), StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("Created {} JWT signing key {} in {}.", this.algorithm, kid, this.keyDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write a new JWT key to " + this.keyDirectory, e);
+        } catch (GeneralSecurityException | JOSEException e) {
+            throw new IllegalStateException("Cannot generate a new " + this.algorithm + " JWT key.", e);
+        }
+    }
+
+    private static String toPem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+
+    /**
+     * Reads an unencrypted PKCS#8 "PRIVATE KEY", e.g. from 'openssl genpkey', and its "PUBLIC KEY". The public key
+     * may be left out for RSA, where we can derive it. For EC and Ed25519 append it with 'openssl pkey -pubout'.
+     */
+    private LoadedKey readPem(String kid, Path file) throws IOException, GeneralSecurityException, JOSEException {
+        Map<String, byte[]> blocks = new HashMap<>();
+        Matcher matcher = PEM_BLOCK.matcher(Files.readString(file, StandardCharsets.US_ASCII));
+        while (matcher.find()) {
+            blocks.put(matcher.group(1), Base64.getMimeDecoder().decode(matcher.group(2).trim()));
+        }
+        if (!blocks.containsKey("PRIVATE KEY")) {
+            throw new IllegalArgumentException("Expected an unencrypted PKCS#8 PRIVATE KEY block.");
+        }
+
+        for (JwtSigningAlgorithm candidate : JwtSigningAlgorithm.values()) {
+            KeyFactory keyFactory = KeyFactory.getInstance(candidate.getKeyAlgorithm());
+            PrivateKey privateKey;
+            try {
+                privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(blocks.get("PRIVATE KEY")));
+            } catch (InvalidKeySpecException e) {
+                continue; // Not a key of this type.
+            }
+            PublicKey publicKey;
+            if (blocks.containsKey("PUBLIC KEY")) {
+                publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(blocks.get("PUBLIC KEY")));
+            } else if (privateKey instanceof RSAPrivateCrtKey rsaPrivateKey) {
+                publicKey = keyFactory.generatePublic(new RSAPublicKeySpec(rsaPrivateKey.getModulus(), rsaPrivateKey.getPublicExponent()));
+            } else {
+                throw new IllegalArgumentException("A " + candidate + " key file needs a PUBLIC KEY block too.");
+            }
+            return new LoadedKey(kid, JwtSigningAlgorithm.forKey(publicKey), publicKey, privateKey,
+                    Files.getLastModifiedTime(file).toInstant(), file);
+        }
+        throw new IllegalArgumentException("Expected an RSA, EC P-256 or Ed25519 private key.");
+    }
+
+    /**
+     * One key pair, with its JWK form and its signer built up front.
+     */
+    record LoadedKey(String kid, JwtSigningAlgorithm algorithm, PublicKey publicKey, JWK jwk, JWSSigner signer,
+                     Instant createdAt, Path file) {
+
+        LoadedKey(String kid, JwtSigningAlgorithm algorithm, PublicKey publicKey, PrivateKey privateKey,
+                  Instant createdAt, Path file) throws JOSEException {
+            this(kid, algorithm, publicKey, algorithm.toJwk(kid, publicKey, privateKey), algorithm.signer(privateKey),
+                    createdAt, file);
+        }
+    }
+
+    private record KeyRing(LoadedKey signingKey, List<LoadedKey> keys) {
+    }
+}
@@ -0,0 +1,211 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.proc.JWSVerifierFactory;
+import com.nimbusds.jose.util.Base64URL;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.EdECPrivateKey;
+import java.security.interfaces.EdECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The JWS algorithms we can sign tokens with, selected by jwt.keys.algorithm.
+ * <p>
+ * RS256 is the default. ES256 (P-256) and Ed25519 sign faster and give much smaller tokens, but on the JDK they verify
+ * slower than RSA-2048, and we verify on every bearer request. See JwtSigningBenchmark before switching.
+ * Ed25519 runs on the JDK's own provider, so it needs no extra library.
+ */
+public enum JwtSigningAlgorithm {
+
+    RS256(JWSAlgorithm.RS256, "RSA"),
+
+    ES256(JWSAlgorithm.ES256, "EC"),
+
+    ED25519(JWSAlgorithm.EdDSA, "Ed25519");
+
+    // X.509 and PKCS#8 encodings of an Ed25519 key end with the raw 32-byte key.
+    private static final int ED25519_KEY_LENGTH = 32;
+
+    private final JWSAlgorithm jwsAlgorithm;
+
+    private final String keyAlgorithm;
+
+    JwtSigningAlgorithm(JWSAlgorithm jwsAlgorithm, String keyAlgorithm) {
+        this.jwsAlgorithm = jwsAlgorithm;
+        this.keyAlgorithm = keyAlgorithm;
+    }
+
+    public JWSAlgorithm getJwsAlgorithm() {
+        return jwsAlgorithm;
+    }
+
+    /**
+     * The name of the JCA KeyFactory for keys of this algorithm.
+     */
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    public static JwtSigningAlgorithm forKey(PublicKey publicKey) {
+        if (publicKey instanceof RSAPublicKey) {
+            return RS256;
+        }
+        if (publicKey instanceof ECPublicKey ecPublicKey && Curve.P_256.equals(Curve.forECParameterSpec(ecPublicKey.getParams()))) {
+            return ES256;
+        }
+        if (publicKey instanceof EdECPublicKey) {
+            return ED25519;
+        }
+        throw new IllegalArgumentException("Unsupported JWT key type " + publicKey.getAlgorithm());
+    }
+
+    public KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(this.keyAlgorithm);
+        switch (this) {
+            case RS256 -> keyPairGenerator.initialize(2048);
+            case ES256 -> keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+            case ED25519 -> {
+            } // Ed25519 has a single key size.
+        }
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    public JWK toJwk(String kid, PublicKey publicKey, PrivateKey privateKey) {
+        return switch (this) {
+            case RS256 -> new RSAKey.Builder((RSAPublicKey) publicKey)
+                    .privateKey((RSAPrivateKey) privateKey)
+                    .keyID(kid).keyUse(KeyUse.SIGNATURE).algorithm(this.jwsAlgorithm)
+                    .build();
+            case ES256 -> new ECKey.Builder(Curve.P_256, (ECPublicKey) publicKey)
+                    .privateKey((ECPrivateKey) privateKey)
+                    .keyID(kid).keyUse(KeyUse.SIGNATURE).algorithm(this.jwsAlgorithm)
+                    .build();
+            case ED25519 -> new OctetKeyPair.Builder(Curve.Ed25519, Base64URL.encode(rawEd25519Key(publicKey)))
+                    .d(Base64URL.encode(rawEd25519Key(privateKey)))
+                    .keyID(kid).keyUse(KeyUse.SIGNATURE).algorithm(this.jwsAlgorithm)
+                    .build();
+        };
+    }
+
+    public JWSSigner signer(PrivateKey privateKey) throws JOSEException {
+        return switch (this) {
+            case RS256 -> new RSASSASigner(privateKey);
+            case ES256 -> new ECDSASigner((ECPrivateKey) privateKey);
+            case ED25519 -> new Ed25519Signer((EdECPrivateKey) privateKey);
+        };
+    }
+
+    /**
+     * A verifier factory that understands the JDK's Ed25519 keys, and hands every other key to Nimbus.
+     */
+    public static JWSVerifierFactory verifierFactory() {
+        return new DefaultJWSVerifierFactory() {
+            @Override
+            public JWSVerifier createJWSVerifier(JWSHeader header, Key key) throws JOSEException {
+                if (JWSAlgorithm.EdDSA.equals(header.getAlgorithm()) && key instanceof EdECPublicKey publicKey) {
+                    return new Ed25519Verifier(publicKey);
+                }
+                return super.createJWSVerifier(header, key);
+            }
+        };
+    }
+
+    private static byte[] rawEd25519Key(Key key) {
+        byte[] encoded = key.getEncoded();
+        return Arrays.copyOfRange(encoded, encoded.length - ED25519_KEY_LENGTH, encoded.length);
+    }
+
+    // Nimbus' own Ed25519 signer and verifier need Google Tink. These use the JDK's SunEC provider instead.
+    private static final class Ed25519Signer implements JWSSigner {
+
+        private final EdECPrivateKey privateKey;
+
+        private final JCAContext jcaContext = new JCAContext();
+
+        Ed25519Signer(EdECPrivateKey privateKey) {
+            this.privateKey = privateKey;
+        }
+
+        @Override
+        public Base64URL sign(JWSHeader header, byte[] signingInput) throws JOSEException {
+            try {
+                Signature signature = Signature.getInstance("Ed25519");
+                signature.initSign(this.privateKey);
+                signature.update(signingInput);
+                return Base64URL.encode(signature.sign());
+            } catch (GeneralSecurityException e) {
+                throw new JOSEException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+            return Set.of(JWSAlgorithm.EdDSA);
+        }
+
+        @Override
+        public JCAContext getJCAContext() {
+            return this.jcaContext;
+        }
+    }
+
+    private static final class Ed25519Verifier implements JWSVerifier {
+
+        private final EdECPublicKey publicKey;
+
+        private final JCAContext jcaContext = new JCAContext();
+
+        Ed25519Verifier(EdECPublicKey publicKey) {
+            this.publicKey = publicKey;
+        }
+
+        @Override
+        public boolean verify(JWSHeader header, byte[] signingInput, Base64URL signature) throws JOSEException {
+            try {
+                Signature verifier = Signature.getInstance("Ed25519");
+                verifier.initVerify(this.publicKey);
+                verifier.update(signingInput);
+                return verifier.verify(signature.decode());
+            } catch (GeneralSecurityException e) {
+                return false; // E.g., a signature of the wrong length.
+            }
+        }
+
+        @Override
+        public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+            return Set.of(JWSAlgorithm.EdDSA);
+        }
+
+        @Override
+        public JCAContext getJCAContext() {
+            return this.jcaContext;
+        }
+    }
+}
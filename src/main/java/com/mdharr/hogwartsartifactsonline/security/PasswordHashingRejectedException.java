@@ -0,0 +1,18 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown when the password hashing pool is saturated and a BCrypt call is shed instead of queued.
+ * It is an AuthenticationException, so HTTP Basic logins that hit it reach the entry point like any other failure.
+ */
+public class PasswordHashingRejectedException extends AuthenticationServiceException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+
+    public PasswordHashingRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
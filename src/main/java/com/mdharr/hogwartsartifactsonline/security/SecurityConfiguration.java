@@ -1,42 +1,33 @@
 package com.mdharr.hogwartsartifactsonline.security;
 
-import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
-import com.nimbusds.jose.jwk.source.JWKSource;
+import com.mdharr.hogwartsartifactsonline.hogwartsuser.RoleRegistry;
+import com.mdharr.hogwartsartifactsonline.hogwartsuser.UserService;
 import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
+import java.util.Collection;
 
 @Configuration
 public class SecurityConfiguration {
 
-    private final RSAPublicKey publicKey;
-
-    private final RSAPrivateKey privateKey;
-
     @Value("${api.endpoint.base-url}")
     private String baseUrl;
 
@@ -46,16 +37,10 @@ public class SecurityConfiguration {
 
     private final CustomBearerTokenAccessDeniedHandler customBearerTokenAccessDeniedHandler;
 
-    public SecurityConfiguration(CustomBasicAuthenticationEntryPoint customBasicAuthenticationEntryPoint, CustomBearerTokenAuthenticationEntryPoint customBearerTokenAuthenticationEntryPoint, CustomBearerTokenAccessDeniedHandler customBearerTokenAccessDeniedHandler) throws NoSuchAlgorithmException {
+    public SecurityConfiguration(CustomBasicAuthenticationEntryPoint customBasicAuthenticationEntryPoint, CustomBearerTokenAuthenticationEntryPoint customBearerTokenAuthenticationEntryPoint, CustomBearerTokenAccessDeniedHandler customBearerTokenAccessDeniedHandler) {
         this.customBasicAuthenticationEntryPoint = customBasicAuthenticationEntryPoint;
         this.customBearerTokenAuthenticationEntryPoint = customBearerTokenAuthenticationEntryPoint;
         this.customBearerTokenAccessDeniedHandler = customBearerTokenAccessDeniedHandler;
-
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-        keyPairGenerator.initialize(2048); // The generated key will have a size of 2048 bits.
-        KeyPair keypair = keyPairGenerator.generateKeyPair();
-        this.publicKey = (RSAPublicKey) keypair.getPublic(); // Have to downcast returned keypair values for public and private keys
-        this.privateKey = (RSAPrivateKey) keypair.getPrivate();
     }
 
     @Bean
@@ -82,34 +67,49 @@ public class SecurityConfiguration {
                 .build();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    @Bean // BCrypt runs on its own bounded pool, see BoundedPasswordEncoder.
+    public BoundedPasswordEncoder passwordEncoder(@Value("${password-hashing.pool-size}") int poolSize,
+                                                  @Value("${password-hashing.queue-capacity}") int queueCapacity,
+                                                  MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(12), poolSize, queueCapacity, meterRegistry);
     }
 
-    @Bean
-    public JwtEncoder jwtEncoder() {
-        JWK jwk = new RSAKey.Builder(this.publicKey).privateKey(this.privateKey).build(); // JWK means JSON Web Key.
-        JWKSource<SecurityContext> jwkSet = new ImmutableJWKSet<>(new JWKSet(jwk));
-        return new NimbusJwtEncoder(jwkSet);
+    @Bean // HTTP Basic logins go through this provider, which skips BCrypt for recently verified credentials.
+    public CachingDaoAuthenticationProvider authenticationProvider(UserService userService, PasswordEncoder passwordEncoder, VerifiedCredentialCache verifiedCredentialCache) {
+        CachingDaoAuthenticationProvider authenticationProvider = new CachingDaoAuthenticationProvider(passwordEncoder, verifiedCredentialCache);
+        authenticationProvider.setUserDetailsService(userService);
+        return authenticationProvider;
     }
 
-    @Bean
-    public JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withPublicKey(this.publicKey).build();
+    @Bean // Signs with the newest key from JwtKeyManager, using jwt.keys.algorithm; its kid goes into the token header.
+    public JwtEncoder jwtEncoder(JwtKeyManager jwtKeyManager) {
+        return new SigningKeyJwtEncoder(jwtKeyManager);
     }
 
-    @Bean // Since "authorities" is a custom claim that is not built-in, we have to tell Spring Security about it.
-    public JwtAuthenticationConverter jwtAuthenticationConverter() {
-        JwtGrantedAuthoritiesConverter jwtGrantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
-
-        jwtGrantedAuthoritiesConverter.setAuthoritiesClaimName("authorities");
-        jwtGrantedAuthoritiesConverter.setAuthorityPrefix(""); // Remove default Authority Prefix; The default is "SCOPE_".
+    @Bean // Verifies against the current and previous keys, picked by the alg and kid in the token header. Tokens seen before skip this, see CachingJwtDecoder.
+    public CachingJwtDecoder jwtDecoder(JwtKeyManager jwtKeyManager,
+                                        @Value("${jwt.cache.maximum-size}") long cacheMaximumSize,
+                                        MeterRegistry meterRegistry) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(jwtKeyManager);
+        jwtProcessor.setJWSVerifierFactory(JwtSigningAlgorithm.verifierFactory());
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        }); // NimbusJwtDecoder validates the claims itself.
+        return new CachingJwtDecoder(new NimbusJwtDecoder(jwtProcessor), jwtGrantedAuthoritiesConverter(), cacheMaximumSize, meterRegistry);
+    }
 
+    @Bean // Reuses the authorities the decoder already built for a cached token.
+    public JwtAuthenticationConverter jwtAuthenticationConverter(CachingJwtDecoder jwtDecoder) {
         JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwtGrantedAuthoritiesConverter);
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwtDecoder.authoritiesConverter());
 
         return jwtAuthenticationConverter;
     }
 
+    // Since "authorities" is a custom claim that is not built-in, we have to tell Spring Security about it.
+    // Its values already carry the "ROLE_" prefix, and RoleRegistry shares one authority list per distinct claim value.
+    private static Converter<Jwt, Collection<GrantedAuthority>> jwtGrantedAuthoritiesConverter() {
+        return jwt -> RoleRegistry.fromAuthorities(jwt.getClaimAsString("authorities"));
+    }
+
 }
@@ -0,0 +1,55 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtEncodingException;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Signs tokens with JwtKeyManager's current signing key, whatever its algorithm.
+ * We don't use NimbusJwtEncoder here because it only matches RSA, EC and HMAC keys, not Ed25519.
+ * Any JwsHeader in the parameters is ignored: the key decides the alg and kid headers.
+ */
+public class SigningKeyJwtEncoder implements JwtEncoder {
+
+    private final JwtKeyManager jwtKeyManager;
+
+    public SigningKeyJwtEncoder(JwtKeyManager jwtKeyManager) {
+        this.jwtKeyManager = jwtKeyManager;
+    }
+
+    @Override
+    public Jwt encode(JwtEncoderParameters parameters) throws JwtEncodingException {
+        JwtKeyManager.LoadedKey signingKey = this.jwtKeyManager.getSigningKey();
+        JWSHeader header = new JWSHeader.Builder(signingKey.algorithm().getJwsAlgorithm())
+                .type(JOSEObjectType.JWT)
+                .keyID(signingKey.kid())
+                .build();
+
+        JwtClaimsSet claims = parameters.getClaims();
+        JWTClaimsSet.Builder jwtClaimsSet = new JWTClaimsSet.Builder();
+        // Nimbus writes exp, iat and nbf as epoch seconds only when they are Dates.
+        claims.getClaims().forEach((name, value) -> jwtClaimsSet.claim(name, value instanceof Instant instant ? Date.from(instant) : value));
+
+        SignedJWT signedJwt = new SignedJWT(header, jwtClaimsSet.build());
+        try {
+            signedJwt.sign(signingKey.signer());
+        } catch (JOSEException e) {
+            throw new JwtEncodingException("An error occurred while attempting to encode the Jwt: " + e.getMessage(), e);
+        }
+
+        return Jwt.withTokenValue(signedJwt.serialize())
+                .headers(headers -> headers.putAll(header.toJSONObject()))
+                .claims(claimsMap -> claimsMap.putAll(claims.getClaims()))
+                .build();
+    }
+}
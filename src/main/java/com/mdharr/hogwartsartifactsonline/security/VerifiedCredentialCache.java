@@ -0,0 +1,120 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived cache of credentials that already passed a BCrypt check, so repeated HTTP Basic calls with the same
+ * username and password skip the expensive password hashing.
+ * <p>
+ * We never keep the plain text password. Entries hold an HMAC-SHA256 digest of it, under a random key that only
+ * lives in this process's memory, so a heap dump does not give away an offline-guessable hash.
+ * <p>
+ * Entries are not checked against the database, so every change to a user's password, roles or enabled flag must
+ * evict the username.
+ */
+@Component
+public class VerifiedCredentialCache {
+
+    private final Cache<String, VerifiedCredential> cache;
+
+    private final SecretKey digestKey;
+
+    // Bumped by every eviction. A login caches what it verified only if nothing was evicted since it started,
+    // since it may have read the user before the change behind the eviction was committed.
+    private final AtomicLong evictions = new AtomicLong();
+
+    public VerifiedCredentialCache(@Value("${credential-cache.maximum-size}") long maximumSize,
+                                   @Value("${credential-cache.time-to-live}") Duration timeToLive,
+                                   MeterRegistry meterRegistry) throws GeneralSecurityException {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        this.digestKey = KeyGenerator.getInstance("HmacSHA256").generateKey();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "verifiedCredentials");
+    }
+
+    /**
+     * Returns the user if this exact username and password were verified recently, otherwise null.
+     */
+    public UserDetails getVerifiedUser(String username, String presentedPassword) {
+        VerifiedCredential verifiedCredential = this.cache.getIfPresent(username);
+        if (verifiedCredential == null) {
+            return null;
+        }
+        byte[] digest = digest(username, presentedPassword, verifiedCredential.userDetails().getPassword());
+        return MessageDigest.isEqual(digest, verifiedCredential.digest()) ? verifiedCredential.userDetails() : null;
+    }
+
+    // Take this before loading the user, and pass it to put() once the password is verified.
+    public long evictionStamp() {
+        return this.evictions.get();
+    }
+
+    public void put(UserDetails userDetails, String presentedPassword, long evictionStamp) {
+        byte[] digest = digest(userDetails.getUsername(), presentedPassword, userDetails.getPassword());
+        // Runs atomically with invalidate() for the same username, so an eviction is either seen here or removes our entry.
+        this.cache.asMap().compute(userDetails.getUsername(), (username, current) ->
+                this.evictions.get() == evictionStamp ? new VerifiedCredential(userDetails, digest) : current);
+    }
+
+    /**
+     * Evicts the username right away, and once more after the current transaction completes. The second eviction drops
+     * anything a concurrent login cached from the user it read before our changes were committed.
+     */
+    public void evict(String username) {
+        invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(username);
+                }
+            });
+        }
+    }
+
+    private void invalidate(String username) {
+        this.cache.asMap().compute(username, (name, current) -> {
+            this.evictions.incrementAndGet();
+            return null;
+        });
+    }
+
+    // Binds the digest to the stored hash of the cached UserDetails. That hash is as old as the entry, so this does not
+    // catch a password change by itself: changing a password must evict the username.
+    private byte[] digest(String username, String presentedPassword, String storedPassword) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(this.digestKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(presentedPassword.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(String.valueOf(storedPassword).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available.", e);
+        }
+    }
+
+    private record VerifiedCredential(UserDetails userDetails, byte[] digest) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size Bloom filter over strings. mightContain() never returns false for a key that was put, and returns
+ * true for a key that was not put with about the false positive rate it was sized for. Keys cannot be removed.
+ * <p>
+ * Safe for concurrent use without locking: bits are only ever set, with compare-and-set.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final long numberOfBits;
+
+    private final int numberOfHashes;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("expectedInsertions must be at least 1");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        // The usual optimum: m = -n ln(p) / ln(2)^2 bits and k = m / n ln(2) hash functions.
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int numberOfWords = Math.toIntExact(Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(numberOfWords);
+        this.numberOfBits = numberOfWords * 64L;
+        this.numberOfHashes = Math.max(1, (int) Math.round((double) this.numberOfBits / expectedInsertions * Math.log(2)));
+    }
+
+    void put(String key) {
+        long hash = hash(key);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1L;
+        for (int i = 0; i < this.numberOfHashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % this.numberOfBits;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = this.words.get(word);
+            while ((current & mask) == 0 && !this.words.compareAndSet(word, current, current | mask)) {
+                current = this.words.get(word);
+            }
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1L;
+        for (int i = 0; i < this.numberOfHashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % this.numberOfBits;
+            if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes.
+    private static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // MurmurHash3's fmix64, spreads FNV's weak low bits over the whole word.
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,16 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) paginated listing. The client passes nextCursor back as the cursor
+ * request parameter to fetch the following page; a null nextCursor means this is the last page.
+ */
+public record CursorPage<T>(List<T> content, int size, String nextCursor) {
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        List<R> mappedContent = this.content.stream().<R>map(mapper).toList();
+        return new CursorPage<>(mappedContent, this.size, this.nextCursor);
+    }
+}
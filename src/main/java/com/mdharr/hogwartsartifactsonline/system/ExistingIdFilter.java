@@ -0,0 +1,200 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Index of the ids that exist in one table, so a lookup of an id that certainly does not exist can be answered with
+ * a 404 without querying the database. mightExist() may return true for a missing id, never false for an existing one.
+ * <p>
+ * The index is a Bloom filter of every id, rebuilt from the database once the application is ready and then every
+ * id-filter.rebuild-interval. Other nodes share the table, so rows they insert after a rebuild are not in it. Every id
+ * has a position in the order ids are handed out, e.g. the millisecond an artifact id was minted, and the filter only
+ * trusts the Bloom filter for ids positioned before what the last rebuild covered. Ids positioned after it always
+ * reach the database, and ids no node could have handed out are rejected unless the rebuild found them.
+ * <p>
+ * Services add the ids they save, both right away and again after commit, so a rebuild running concurrently cannot
+ * lose them. Deleted ids cannot be removed from a Bloom filter and keep costing a query until the next rebuild.
+ * On top of the index, ids the database just confirmed missing are remembered for id-filter.miss-time-to-live, so
+ * repeated lookups of a made-up id that got past the index skip the database too. Until the first rebuild, every id
+ * that was not a confirmed miss might exist.
+ */
+public abstract class ExistingIdFilter<ID> {
+
+    private final Supplier<Stream<ID>> allIds;
+
+    private final long expectedIds;
+
+    private final double falsePositiveRate;
+
+    private final Cache<ID, Boolean> confirmedMisses;
+
+    private final Counter rejectedCounter;
+
+    private final Counter passedCounter;
+
+    // One rebuild at a time. A lock rather than synchronized, so a scheduled rebuild on a virtual thread does not pin
+    // its carrier thread while it reads ids from the database.
+    private final Lock rebuildLock = new ReentrantLock();
+
+    // null until the first rebuild
+    private volatile Index index;
+
+    // Number of ids the last rebuild read, to size the next one.
+    private long lastIdCount;
+
+    // Ids added while a rebuild is reading ids, null otherwise. Guarded by this.
+    private Set<String> addedDuringRebuild;
+
+    protected ExistingIdFilter(String name, Supplier<Stream<ID>> allIds, long expectedIds, double falsePositiveRate,
+                               long maximumMisses, Duration missTimeToLive, MeterRegistry meterRegistry) {
+        this.allIds = allIds;
+        this.expectedIds = expectedIds;
+        this.falsePositiveRate = falsePositiveRate;
+        this.confirmedMisses = Caffeine.newBuilder()
+                .maximumSize(maximumMisses)
+                .expireAfterWrite(missTimeToLive)
+                .build();
+        this.rejectedCounter = Counter.builder("id.filter.lookups")
+                .description("Lookups answered as not found without a query, or passed on to the database")
+                .tags("name", name, "result", "rejected")
+                .register(meterRegistry);
+        this.passedCounter = Counter.builder("id.filter.lookups")
+                .description("Lookups answered as not found without a query, or passed on to the database")
+                .tags("name", name, "result", "passed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Where the id falls in the order ids are handed out, or -1 if no node could have handed it out.
+     */
+    protected abstract long position(ID id);
+
+    /**
+     * The highest position the Bloom filter can be trusted for, after a rebuild that started at rebuildStartedAt
+     * (epoch milliseconds) and read ids up to highestPosition. Rows committed after the rebuild read the table must
+     * be positioned above it.
+     */
+    protected abstract long indexedUpTo(long rebuildStartedAt, long highestPosition);
+
+    public boolean mightExist(ID id) {
+        if (id == null) {
+            this.passedCounter.increment();
+            return true;
+        }
+        if (this.confirmedMisses.getIfPresent(id) == null) {
+            Index current = this.index;
+            if (current == null || current.ids().mightContain(id.toString()) || isAfter(id, current)) {
+                this.passedCounter.increment();
+                return true;
+            }
+        }
+        this.rejectedCounter.increment();
+        return false;
+    }
+
+    // Call only after the database found no row with this id.
+    public void recordMiss(ID id) {
+        if (id != null) {
+            this.confirmedMisses.put(id, Boolean.TRUE);
+        }
+    }
+
+    public void add(ID id) {
+        add(List.of(id));
+    }
+
+    /**
+     * Indexes the given ids and forgets their recorded misses, right away and once more after the current transaction
+     * commits, in case a concurrent rebuild or lookup read the table before our insert was visible.
+     */
+    public void add(Collection<ID> ids) {
+        List<ID> copy = List.copyOf(ids);
+        put(copy);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(copy);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads every id from the database and swaps in a new index. Subclasses call it inside a read-only transaction,
+     * which keeps the id stream's cursor open.
+     */
+    public void rebuild() {
+        this.rebuildLock.lock();
+        try {
+            synchronized (this) {
+                this.addedDuringRebuild = ConcurrentHashMap.newKeySet();
+            }
+            Index rebuilt = null;
+            try {
+                long startedAt = System.currentTimeMillis();
+                // The number of ids is only known once they are read. Sizing for twice what the previous rebuild read
+                // leaves room to grow before the false positive rate goes up.
+                BloomFilter ids = new BloomFilter(Math.max(this.expectedIds, 2L * this.lastIdCount), this.falsePositiveRate);
+                long count = 0;
+                long highestPosition = -1;
+                try (Stream<ID> rows = this.allIds.get()) {
+                    for (ID id : (Iterable<ID>) rows::iterator) {
+                        ids.put(id.toString());
+                        highestPosition = Math.max(highestPosition, position(id));
+                        count++;
+                    }
+                }
+                this.lastIdCount = count;
+                rebuilt = new Index(ids, indexedUpTo(startedAt, highestPosition));
+            } finally {
+                synchronized (this) {
+                    if (rebuilt != null) {
+                        this.addedDuringRebuild.forEach(rebuilt.ids()::put);
+                        this.index = rebuilt;
+                    }
+                    this.addedDuringRebuild = null;
+                }
+            }
+        } finally {
+            this.rebuildLock.unlock();
+        }
+    }
+
+    // Handed out after what the index covers, so possibly by another node since the last rebuild.
+    private boolean isAfter(ID id, Index index) {
+        long position = position(id);
+        return position >= 0 && position > index.upTo();
+    }
+
+    private synchronized void put(List<ID> ids) {
+        this.confirmedMisses.invalidateAll(ids);
+        for (ID id : ids) {
+            String key = id.toString();
+            if (this.index != null) {
+                this.index.ids().put(key);
+            }
+            if (this.addedDuringRebuild != null) {
+                this.addedDuringRebuild.add(key);
+            }
+        }
+    }
+
+    private record Index(BloomFilter ids, long upTo) {
+    }
+}
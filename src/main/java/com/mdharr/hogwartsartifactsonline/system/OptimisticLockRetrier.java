@@ -0,0 +1,89 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs a transactional service call again when it loses an optimistic lock race, up to optimistic-lock.max-attempts times.
+ * <p>
+ * The version check only fails when the transaction commits, so the call must start and commit its own transaction:
+ * call this from a controller, never from inside a @Transactional method. When every attempt fails, the last
+ * OptimisticLockingFailureException is passed on, and ExceptionHandlerAdvice turns it into a 409.
+ */
+@Component
+public class OptimisticLockRetrier {
+
+    private final int maxAttempts;
+
+    private final long backoffNanos;
+
+    private final Counter retriedCounter;
+
+    private final Counter exhaustedCounter;
+
+    public OptimisticLockRetrier(@Value("${optimistic-lock.max-attempts}") int maxAttempts,
+                                 @Value("${optimistic-lock.backoff}") Duration backoff,
+                                 MeterRegistry meterRegistry) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("optimistic-lock.max-attempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = backoff.toNanos();
+        this.retriedCounter = Counter.builder("optimistic.lock.retries")
+                .description("Calls run again after an optimistic lock failure")
+                .tag("outcome", "retried")
+                .register(meterRegistry);
+        this.exhaustedCounter = Counter.builder("optimistic.lock.retries")
+                .description("Calls run again after an optimistic lock failure")
+                .tag("outcome", "exhausted")
+                .register(meterRegistry);
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T call(Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Retrying inside a transaction would retry a transaction that is already rolled back.");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= this.maxAttempts) {
+                    this.exhaustedCounter.increment();
+                    throw e;
+                }
+                this.retriedCounter.increment();
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    // Waits a random time that grows with each attempt, so the requests that just collided do not collide again in lockstep.
+    private void backOff(int attempt, OptimisticLockingFailureException cause) {
+        long maxNanos = this.backoffNanos * attempt;
+        if (maxNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(maxNanos + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Caffeine-backed JCache regions for Hibernate's second-level cache, sized from the second-level-cache settings.
+ * <p>
+ * Each application context gets its own CacheManager, so contexts never share cached entities. Hibernate is told
+ * to fail on a region that is not created here, so a mistyped region name on an entity shows up at startup.
+ * Bulk JPQL updates evict the regions of the tables they touch, see the hibernate.cache settings in application.yml.
+ * <p>
+ * Regions live in this process only, so a write made on another node is not evicted here. Region lifetimes are kept
+ * short (seconds to a minute) because they are the bound on how stale an entity, and the ETag derived from it, can be.
+ */
+@Configuration
+public class SecondLevelCacheConfiguration {
+
+    @Bean
+    public CacheManager secondLevelCacheManager(@Value("${second-level-cache.artifact.maximum-size}") long artifactSize,
+                                                @Value("${second-level-cache.artifact.time-to-live}") Duration artifactTtl,
+                                                @Value("${second-level-cache.wizard.maximum-size}") long wizardSize,
+                                                @Value("${second-level-cache.wizard.time-to-live}") Duration wizardTtl,
+                                                @Value("${second-level-cache.user.maximum-size}") long userSize,
+                                                @Value("${second-level-cache.user.time-to-live}") Duration userTtl,
+                                                @Value("${second-level-cache.query.maximum-size}") long querySize,
+                                                @Value("${second-level-cache.query.time-to-live}") Duration queryTtl) {
+        CacheManager cacheManager = new CaffeineCachingProvider().getCacheManager();
+        cacheManager.createCache("artifact", region(artifactSize, artifactTtl));
+        cacheManager.createCache("wizard", region(wizardSize, wizardTtl));
+        // Artifact ids per wizard, so the same size and lifetime as the wizards they belong to.
+        cacheManager.createCache("wizard-artifacts", region(wizardSize, wizardTtl));
+        cacheManager.createCache("user", region(userSize, userTtl));
+        cacheManager.createCache("user-by-username", region(querySize, queryTtl));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, region(querySize, queryTtl));
+        // Cached query results are checked against these timestamps, so this region must never lose an entry.
+        CaffeineConfiguration<Object, Object> timestamps = new CaffeineConfiguration<>();
+        timestamps.setStoreByValue(false);
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, timestamps);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    // Hibernate copies entities into its own cache entries, so the values can be stored by reference.
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, Duration timeToLive) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(timeToLive.toNanos()));
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,76 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader, and callers that arrive while it is
+ * still running wait for its result (or its exception) instead of running their own. Nothing is kept once the load
+ * finishes, so this is not a cache; a caller that arrives later starts a new load.
+ * <p>
+ * The shared value is handed to several requests at once, so it must be immutable, e.g. a DTO record, never a JPA
+ * entity that belongs to the leader's persistence context.
+ * <p>
+ * Publishes single.flight.loads tagged with name and result, leader for loads that ran and coalesced for callers
+ * that waited for one.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderCounter;
+
+    private final Counter coalescedCounter;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.leaderCounter = Counter.builder("single.flight.loads")
+                .description("Loads run, or shared with concurrent callers for the same key")
+                .tags("name", name, "result", "leader")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("single.flight.loads")
+                .description("Loads run, or shared with concurrent callers for the same key")
+                .tags("name", name, "result", "coalesced")
+                .register(meterRegistry);
+    }
+
+    public V load(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            this.coalescedCounter.increment();
+            return await(existing);
+        }
+        this.leaderCounter.increment();
+        try {
+            V value = loader.apply(key);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, flight);
+        }
+    }
+
+    // Waiting callers get the leader's own exception, e.g. ObjectNotFoundException, so ExceptionHandlerAdvice maps it as usual.
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -12,6 +12,10 @@ public class StatusCode {
 
     public static final int NOT_FOUND = 404; // Not found
 
+    public static final int CONFLICT = 409; // Changed concurrently by another request, the client may retry
+
     public static final int INTERNAL_SERVER_ERROR = 500; // Server internal error
 
+    public static final int SERVICE_UNAVAILABLE = 503; // Overloaded, the client may retry later
+
 }
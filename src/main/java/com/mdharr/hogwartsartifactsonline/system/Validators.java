@@ -0,0 +1,75 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The strong ETag and the Last-Modified time of a GET response, computed from entity versions and modification times
+ * instead of from the response body.
+ * <p>
+ * Controllers call checkNotModified() before converting anything, and return null when it is true. Spring has then
+ * already set the 304 status, so neither the converters nor the JSON serialization run for an unchanged resource.
+ */
+public record Validators(String eTag, Instant lastModified) {
+
+    public static Validators of(Instant lastModified, Object... versionParts) {
+        String eTag = Arrays.stream(versionParts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("-", "\"", "\""));
+        return new Validators(eTag, lastModified);
+    }
+
+    /**
+     * Validators for a listing, from the ids and Validators of the rows it shows, in the order they are shown.
+     * Only the returned rows are looked at, so the cost grows with the page size and not with the table.
+     * The ETag is a digest, so it stays short however many rows there are. There is no Last-Modified: after a row is
+     * deleted, the latest remaining modification time can be older than the one the client has, so If-Modified-Since
+     * would miss the change.
+     *
+     * @param rows the rows of the listing
+     * @param id the id of a row
+     * @param validators the Validators of a row, as if it were fetched on its own
+     * @param extraParts anything else the body depends on, e.g. the next cursor
+     * @return
+     */
+    public static <T> Validators ofRows(List<T> rows, Function<? super T, ?> id, Function<? super T, Validators> validators, Object... extraParts) {
+        MessageDigest digest = sha256();
+        for (T row : rows) {
+            digest.update((id.apply(row) + "=" + validators.apply(row).eTag() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        Arrays.stream(extraParts).forEach(part -> digest.update((part + "\n").getBytes(StandardCharsets.UTF_8)));
+        // 128 bits are plenty to tell listings apart.
+        String eTag = "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        return new Validators(eTag, null);
+    }
+
+    public static Instant latest(Instant... instants) {
+        return Arrays.stream(instants).filter(Objects::nonNull).max(Instant::compareTo).orElse(null);
+    }
+
+    /**
+     * Sets the ETag and Last-Modified response headers, and answers whether the client's copy is still current,
+     * going by If-None-Match first and If-Modified-Since otherwise.
+     */
+    public boolean checkNotModified(WebRequest request) {
+        return request.checkNotModified(this.eTag, this.lastModified == null ? -1 : this.lastModified.toEpochMilli());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform supports SHA-256.", e);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.mdharr.hogwartsartifactsonline.system.exception;
 
+import com.mdharr.hogwartsartifactsonline.security.PasswordHashingRejectedException;
 import com.mdharr.hogwartsartifactsonline.system.Result;
 import com.mdharr.hogwartsartifactsonline.system.StatusCode;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.AccountStatusException;
@@ -29,6 +31,18 @@ public class ExceptionHandlerAdvice {
         return new Result(false, StatusCode.NOT_FOUND, exception.getMessage());
     }
 
+    @ExceptionHandler(InvalidFieldsException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    Result handleInvalidFieldsException(InvalidFieldsException exception) {
+        return new Result(false, StatusCode.INVALID_ARGUMENT, exception.getMessage());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    Result handleOptimisticLockingFailureException(OptimisticLockingFailureException exception) {
+        return new Result(false, StatusCode.CONFLICT, "The resource was changed by another request, please retry.", exception.getMessage());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     Result handleValidationException(MethodArgumentNotValidException ex) {
@@ -72,6 +86,12 @@ public class ExceptionHandlerAdvice {
         return new Result(false, StatusCode.FORBIDDEN, "No permission.", exception.getMessage());
     }
 
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    Result handlePasswordHashingRejectedException(PasswordHashingRejectedException exception) {
+        return new Result(false, StatusCode.SERVICE_UNAVAILABLE, "The server is busy, please retry later.", exception.getMessage());
+    }
+
     /**
      * Fallback handles any unhandled exceptions.
      * @param exception
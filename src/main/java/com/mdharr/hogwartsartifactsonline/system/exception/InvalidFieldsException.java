@@ -0,0 +1,8 @@
+package com.mdharr.hogwartsartifactsonline.system.exception;
+
+public class InvalidFieldsException extends RuntimeException {
+
+    public InvalidFieldsException(String message) {
+        super(message);
+    }
+}
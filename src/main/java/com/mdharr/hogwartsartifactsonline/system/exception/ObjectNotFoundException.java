@@ -1,12 +1,13 @@
 package com.mdharr.hogwartsartifactsonline.system.exception;
 
+// Thrown for every lookup of a missing id, which ExceptionHandlerAdvice turns into a 404, so no stack trace is captured.
 public class ObjectNotFoundException extends RuntimeException {
 
     public ObjectNotFoundException(String objectName, String id) {
-        super("Could not find " + objectName + " with Id " + id + " :(");
+        super("Could not find " + objectName + " with Id " + id + " :(", null, false, false);
     }
 
     public ObjectNotFoundException(String objectName, Integer id) {
-        super("Could not find " + objectName + " with Id " + id + " :(");
+        super("Could not find " + objectName + " with Id " + id + " :(", null, false, false);
     }
 }
@@ -0,0 +1,36 @@
+package com.mdharr.hogwartsartifactsonline.system.metrics;
+
+import com.mdharr.hogwartsartifactsonline.system.Result;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Remembers the code of every Result written by a controller or by ExceptionHandlerAdvice,
+ * so ResultCodeObservationConvention can tag http.server.requests with it.
+ */
+@RestControllerAdvice
+public class ResultCodeAdvice implements ResponseBodyAdvice<Object> {
+
+    static final String RESULT_CODE_ATTRIBUTE = ResultCodeAdvice.class.getName() + ".code";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof Result result && result.getCode() != null && request instanceof ServletServerHttpRequest servletRequest) {
+            servletRequest.getServletRequest().setAttribute(RESULT_CODE_ATTRIBUTE, result.getCode());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,37 @@
+package com.mdharr.hogwartsartifactsonline.system.metrics;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Adds two tags to http.server.requests: code, the StatusCode in the Result body, and handler,
+ * the controller method that served the request, e.g. ArtifactController.findArtifactById.
+ * <p>
+ * Responses without a Result body, e.g. a 304 or an error written by a security filter, get code "none".
+ */
+@Component
+public class ResultCodeObservationConvention extends DefaultServerRequestObservationConvention {
+
+    @Override
+    public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+        return super.getLowCardinalityKeyValues(context).and(code(context), handler(context));
+    }
+
+    private static KeyValue code(ServerRequestObservationContext context) {
+        Object code = context.getCarrier().getAttribute(ResultCodeAdvice.RESULT_CODE_ATTRIBUTE);
+        return KeyValue.of("code", code == null ? "none" : code.toString());
+    }
+
+    private static KeyValue handler(ServerRequestObservationContext context) {
+        Object handler = context.getCarrier().getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod handlerMethod) {
+            return KeyValue.of("handler", handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName());
+        }
+        return KeyValue.of("handler", "none");
+    }
+}
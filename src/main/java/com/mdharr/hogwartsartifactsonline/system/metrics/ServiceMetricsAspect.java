@@ -0,0 +1,90 @@
+package com.mdharr.hogwartsartifactsonline.system.metrics;
+
+import com.mdharr.hogwartsartifactsonline.security.PasswordHashingRejectedException;
+import com.mdharr.hogwartsartifactsonline.system.StatusCode;
+import com.mdharr.hogwartsartifactsonline.system.exception.InvalidFieldsException;
+import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public method of every @Service in this application as service.invocations,
+ * tagged with class, method, outcome, code and exception.
+ * <p>
+ * code is the StatusCode ExceptionHandlerAdvice would answer with, so service timings line up with the
+ * code tag of http.server.requests. This aspect runs outside the transaction interceptor, so the time includes
+ * the commit, and a version check that fails at commit counts as a CONFLICT.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@within(org.springframework.stereotype.Service) && within(com.mdharr.hogwartsartifactsonline..*) && execution(public * *(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(this.meterRegistry);
+        Throwable failure = null;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            int code = failure == null ? StatusCode.SUCCESS : statusCodeOf(failure);
+            sample.stop(Timer.builder("service.invocations")
+                    .description("Time spent in service methods, including the commit of their transaction")
+                    .tag("class", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("outcome", outcomeOf(code))
+                    .tag("code", String.valueOf(code))
+                    .tag("exception", failure == null ? "none" : failure.getClass().getSimpleName())
+                    .register(this.meterRegistry));
+        }
+    }
+
+    // Keep in line with ExceptionHandlerAdvice. PasswordHashingRejectedException is an AuthenticationException, so it goes first.
+    static int statusCodeOf(Throwable failure) {
+        if (failure instanceof ObjectNotFoundException) {
+            return StatusCode.NOT_FOUND;
+        }
+        if (failure instanceof InvalidFieldsException) {
+            return StatusCode.INVALID_ARGUMENT;
+        }
+        if (failure instanceof OptimisticLockingFailureException) {
+            return StatusCode.CONFLICT;
+        }
+        if (failure instanceof PasswordHashingRejectedException) {
+            return StatusCode.SERVICE_UNAVAILABLE;
+        }
+        if (failure instanceof AuthenticationException) {
+            return StatusCode.UNAUTHORIZED;
+        }
+        if (failure instanceof AccessDeniedException) {
+            return StatusCode.FORBIDDEN;
+        }
+        return StatusCode.INTERNAL_SERVER_ERROR;
+    }
+
+    // Same values as the outcome tag of http.server.requests.
+    static String outcomeOf(int code) {
+        if (code < 400) {
+            return "SUCCESS";
+        }
+        return code < 500 ? "CLIENT_ERROR" : "SERVER_ERROR";
+    }
+}
@@ -0,0 +1,146 @@
+package com.mdharr.hogwartsartifactsonline.system.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Times JDBC statements by query shape, and logs the slow ones plus a sample of the rest. TimedDataSource feeds it.
+ * <p>
+ * A shape is the SQL with literals replaced by ? and IN lists collapsed, identified by a short hash. Each shape is
+ * logged once with its hash when first seen, and the hash tags the jdbc.statements timer. Past slow-query.max-shapes
+ * distinct statements, new ones are counted under shape "other".
+ */
+@Component
+public class StatementMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementMetrics.class);
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final MeterRegistry meterRegistry;
+
+    private final long thresholdNanos;
+
+    private final double sampleRate;
+
+    private final int maxShapes;
+
+    // SQL as sent to the driver -> its shape. Hibernate sends the same strings over and over, so this stays small.
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+
+    private final Shape otherShape;
+
+    public StatementMetrics(MeterRegistry meterRegistry,
+                            @Value("${slow-query.threshold}") Duration threshold,
+                            @Value("${slow-query.sample-rate}") double sampleRate,
+                            @Value("${slow-query.max-shapes}") int maxShapes) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("slow-query.sample-rate must be between 0 and 1");
+        }
+        this.meterRegistry = meterRegistry;
+        this.thresholdNanos = threshold.toNanos();
+        this.sampleRate = sampleRate;
+        this.maxShapes = maxShapes;
+        this.otherShape = new Shape("other", "other", meterRegistry);
+    }
+
+    /**
+     * @param sql the statement as sent to the driver, or null when unknown, e.g. an empty batch
+     * @param nanos how long the driver call took
+     * @param failed whether the driver call threw
+     */
+    public void record(String sql, long nanos, boolean failed) {
+        Shape shape = shapeOf(sql);
+        if (failed) {
+            shape.timer(this.meterRegistry, "error").record(nanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        shape.successTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos >= this.thresholdNanos) {
+            LOGGER.warn("Slow query {} took {} ms: {}", shape.id, TimeUnit.NANOSECONDS.toMillis(nanos), sql);
+        } else if (this.sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < this.sampleRate) {
+            LOGGER.info("Sampled query {} took {} ms: {}", shape.id, TimeUnit.NANOSECONDS.toMillis(nanos), sql);
+        }
+    }
+
+    private Shape shapeOf(String sql) {
+        if (sql == null) {
+            return this.otherShape;
+        }
+        Shape shape = this.shapes.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        if (this.shapes.size() >= this.maxShapes) {
+            return this.otherShape;
+        }
+        // Not computeIfAbsent(): logging inside it would write to the console under a map lock. Two threads may both
+        // build the same shape; registering its timers twice gives both the same meters.
+        String normalized = normalize(sql);
+        String id = String.format("%08x", normalized.hashCode());
+        Shape created = new Shape(id, operationOf(normalized), this.meterRegistry);
+        Shape existing = this.shapes.putIfAbsent(sql, created);
+        if (existing != null) {
+            return existing;
+        }
+        LOGGER.info("New query shape {}: {}", id, normalized);
+        return created;
+    }
+
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("in (?)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    static String operationOf(String normalizedSql) {
+        int end = normalizedSql.indexOf(' ');
+        String keyword = (end < 0 ? normalizedSql : normalizedSql.substring(0, end)).toLowerCase(Locale.ROOT);
+        return switch (keyword) {
+            case "select", "with" -> "select";
+            case "insert", "update", "delete", "merge" -> keyword;
+            default -> "other";
+        };
+    }
+
+    private static final class Shape {
+
+        final String id;
+
+        final String operation;
+
+        final Timer successTimer;
+
+        Shape(String id, String operation, MeterRegistry meterRegistry) {
+            this.id = id;
+            this.operation = operation;
+            this.successTimer = timer(meterRegistry, "success");
+        }
+
+        Timer timer(MeterRegistry meterRegistry, String outcome) {
+            return Timer.builder("jdbc.statements")
+                    .description("Time the JDBC driver spent executing statements, by query shape")
+                    .tags("shape", this.id, "operation", this.operation, "outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.mdharr.hogwartsartifactsonline.system.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps the pooled DataSource so every statement executed through it is timed by StatementMetrics.
+ * Connections and statements are JDK proxies that only intercept the execute methods; everything else goes
+ * straight to the pool's objects.
+ * <p>
+ * It extends DelegatingDataSource, so the actuator still finds the Hikari pool behind it for the hikaricp.* metrics.
+ */
+public class TimedDataSource extends DelegatingDataSource {
+
+    private final StatementMetrics statementMetrics;
+
+    public TimedDataSource(DataSource targetDataSource, StatementMetrics statementMetrics) {
+        super(targetDataSource);
+        this.statementMetrics = statementMetrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return timed(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return timed(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection timed(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    Object result = invoke(connection, method, args);
+                    return switch (method.getName()) {
+                        case "prepareStatement" -> timed((Statement) result, PreparedStatement.class, (String) args[0]);
+                        case "prepareCall" -> timed((Statement) result, CallableStatement.class, (String) args[0]);
+                        case "createStatement" -> timed((Statement) result, Statement.class, null);
+                        default -> result;
+                    };
+                });
+    }
+
+    // preparedSql is null for a plain Statement, whose SQL comes with each execute call.
+    private Object timed(Statement statement, Class<? extends Statement> type, String preparedSql) {
+        InvocationHandler handler = new InvocationHandler() {
+
+            // For a plain Statement, the first SQL of the current batch.
+            private String batchSql;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                if (name.equals("addBatch") && preparedSql == null && this.batchSql == null) {
+                    this.batchSql = (String) args[0];
+                } else if (name.equals("clearBatch")) {
+                    this.batchSql = null;
+                }
+                if (!name.startsWith("execute")) {
+                    return TimedDataSource.invoke(statement, method, args);
+                }
+                String sql = preparedSql;
+                if (sql == null) {
+                    sql = args != null && args.length > 0 ? (String) args[0] : this.batchSql;
+                }
+                if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+                    this.batchSql = null;
+                }
+                long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    Object result = TimedDataSource.invoke(statement, method, args);
+                    failed = false;
+                    return result;
+                } finally {
+                    TimedDataSource.this.statementMetrics.record(sql, System.nanoTime() - start, failed);
+                }
+            }
+        };
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    // Passes on what the target threw, not the reflection wrapper.
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.mdharr.hogwartsartifactsonline.system.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps every DataSource bean in a TimedDataSource. StatementMetrics is looked up only when the DataSource is
+ * created, so this post-processor does not pull the MeterRegistry into existence before the other post-processors.
+ */
+@Component
+public class TimedDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<StatementMetrics> statementMetrics;
+
+    public TimedDataSourcePostProcessor(ObjectProvider<StatementMetrics> statementMetrics) {
+        this.statementMetrics = statementMetrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof TimedDataSource)) {
+            return new TimedDataSource(dataSource, this.statementMetrics.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,35 @@
+package com.mdharr.hogwartsartifactsonline.system.nodeidentity;
+
+import com.mdharr.hogwartsartifactsonline.artifact.utils.IdWorker;
+
+/**
+ * An IdWorker whose datacenter and worker ids come from this node's lease. It refuses to hand out ids
+ * once the lease is lost or released, or the clock has moved backwards.
+ * <p>
+ * The lease is checked after the ids are reserved, not before. An id that is handed out was therefore reserved
+ * while the lease was still valid, so the timestamp the lease row records for this holder covers it.
+ */
+public class LeasedIdWorker extends IdWorker {
+
+    private final NodeIdentityService nodeIdentityService;
+
+    public LeasedIdWorker(NodeIdentityService nodeIdentityService) {
+        super(nodeIdentityService.getWorkerId(), nodeIdentityService.getDatacenterId());
+        this.nodeIdentityService = nodeIdentityService;
+        nodeIdentityService.trackLastTimestamp(this::getLastTimestamp);
+    }
+
+    @Override
+    public long nextId() {
+        long id = super.nextId();
+        this.nodeIdentityService.checkLease();
+        return id;
+    }
+
+    @Override
+    public long[] nextIds(int n) {
+        long[] ids = super.nextIds(n);
+        this.nodeIdentityService.checkLease();
+        return ids;
+    }
+}
@@ -0,0 +1,211 @@
+package com.mdharr.hogwartsartifactsonline.system.nodeidentity;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Gives this node a worker id that no other live node holds, by leasing it from the worker_id_lease table.
+ * The lease is renewed in the background. If it cannot be renewed in time, or the clock moves backwards,
+ * the node stops handing out ids instead of risking duplicates.
+ * <p>
+ * A node that takes over a worker id waits until its clock has passed the newest timestamp the previous holder
+ * recorded, so that clock skew between the two nodes cannot make it mint ids the previous holder already minted.
+ */
+@Service
+public class NodeIdentityService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeIdentityService.class);
+
+    // IdWorker has 5 bits of datacenter id and 5 bits of worker id, so we lease from a 10-bit space.
+    static final int WORKER_ID_BITS = 5;
+
+    static final int MAX_LEASED_ID = (1 << (2 * WORKER_ID_BITS)) - 1;
+
+    private final WorkerIdLeaseRepository workerIdLeaseRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Duration leaseDuration;
+
+    private final Clock clock;
+
+    // Unique per process. We deliberately avoid InetAddress lookups, which can stall on slow DNS.
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile int leasedId = -1;
+
+    private volatile long leaseExpiresAt;
+
+    private volatile long lastRenewedAt;
+
+    private volatile boolean clockMovedBackwards;
+
+    private volatile boolean released;
+
+    // The previous holder's last timestamp. No id may be minted until the clock has passed it.
+    private volatile long notBefore = -1L;
+
+    private volatile LongSupplier lastTimestamp = () -> -1L;
+
+    @Autowired
+    public NodeIdentityService(WorkerIdLeaseRepository workerIdLeaseRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${id-worker.lease-duration}") Duration leaseDuration) {
+        this(workerIdLeaseRepository, meterRegistry, leaseDuration, Clock.systemUTC());
+    }
+
+    NodeIdentityService(WorkerIdLeaseRepository workerIdLeaseRepository, MeterRegistry meterRegistry, Duration leaseDuration, Clock clock) {
+        this.workerIdLeaseRepository = workerIdLeaseRepository;
+        this.meterRegistry = meterRegistry;
+        this.leaseDuration = leaseDuration;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void acquire() {
+        long now = this.clock.millis();
+        long expiresAt = now + this.leaseDuration.toMillis();
+
+        // First, try to take over a worker id whose previous holder let the lease run out.
+        for (WorkerIdLease expiredLease : this.workerIdLeaseRepository.findByExpiresAtLessThanOrderByWorkerId(now)) {
+            if (this.workerIdLeaseRepository.takeOverExpired(expiredLease.getWorkerId(), this.nodeId, now, expiresAt) == 1) {
+                // Read the row again: the previous holder may have released it, recording a newer timestamp, after we listed it.
+                Long previousLastTimestamp = this.workerIdLeaseRepository.findById(expiredLease.getWorkerId())
+                        .map(WorkerIdLease::getLastTimestamp)
+                        .orElse(null);
+                if (previousLastTimestamp != null) {
+                    this.notBefore = previousLastTimestamp;
+                    waitUntilPast(previousLastTimestamp);
+                }
+                onAcquired(expiredLease.getWorkerId(), now, expiresAt);
+                return;
+            }
+        }
+
+        // Otherwise, claim the lowest worker id that has never been handed out.
+        Set<Integer> usedIds = new HashSet<>(this.workerIdLeaseRepository.findAllWorkerIds());
+        for (int id = 0; id <= MAX_LEASED_ID; id++) {
+            if (usedIds.contains(id)) {
+                continue;
+            }
+            try {
+                this.workerIdLeaseRepository.insert(id, this.nodeId, now, expiresAt);
+                onAcquired(id, now, expiresAt);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Another node claimed this id at the same moment, try the next one.
+            }
+        }
+        throw new IllegalStateException("All " + (MAX_LEASED_ID + 1) + " worker ids are leased by live nodes.");
+    }
+
+    /**
+     * Sleeps until the clock is past the given timestamp. Ids the previous holder minted after its last renewal are
+     * older than its expiresAt, which our clock has already passed, so only the recorded timestamp can be ahead of us.
+     */
+    private void waitUntilPast(long timestamp) {
+        for (long behind = timestamp - this.clock.millis(); behind >= 0; behind = timestamp - this.clock.millis()) {
+            if (behind >= this.leaseDuration.toMillis()) {
+                throw new IllegalStateException("Clock is " + behind + " ms behind the previous holder of the worker id. Refusing to generate ids on node " + this.nodeId);
+            }
+            try {
+                Thread.sleep(behind + 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the clock to pass the previous holder's last timestamp.", e);
+            }
+        }
+    }
+
+    private void onAcquired(int id, long now, long expiresAt) {
+        this.leasedId = id;
+        this.lastRenewedAt = now;
+        this.leaseExpiresAt = expiresAt;
+        Gauge.builder("idworker.worker.id", this, service -> service.leasedId)
+                .description("The worker id this node leased for generating artifact ids")
+                .register(this.meterRegistry);
+        LOGGER.info("Node {} leased worker id {} (datacenter id {}, worker id {}).", this.nodeId, id, getDatacenterId(), getWorkerId());
+    }
+
+    @Scheduled(initialDelayString = "${id-worker.renew-interval}", fixedDelayString = "${id-worker.renew-interval}")
+    public void renew() {
+        long now = this.clock.millis();
+        if (now < this.lastRenewedAt) {
+            // Fail fast: with the clock behind our last renewal, we could mint ids that already exist.
+            this.clockMovedBackwards = true;
+            LOGGER.error("Clock moved backwards by {} ms, id generation is disabled on node {}.", this.lastRenewedAt - now, this.nodeId);
+            return;
+        }
+        long expiresAt = now + this.leaseDuration.toMillis();
+        if (this.workerIdLeaseRepository.renew(this.leasedId, this.nodeId, now, expiresAt, this.lastTimestamp.getAsLong()) == 1) {
+            this.lastRenewedAt = now;
+            this.leaseExpiresAt = expiresAt;
+        } else {
+            this.leaseExpiresAt = 0L;
+            LOGGER.error("Node {} lost the lease on worker id {}, id generation is disabled.", this.nodeId, this.leasedId);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        if (this.leasedId >= 0) {
+            // Stop minting first, so no id newer than the timestamp we record can still be handed out.
+            this.released = true;
+            this.workerIdLeaseRepository.release(this.leasedId, this.nodeId, this.clock.millis(), this.lastTimestamp.getAsLong());
+        }
+    }
+
+    /**
+     * Lets the lease row record the newest timestamp the given source has minted ids for.
+     */
+    void trackLastTimestamp(LongSupplier lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Throws unless this node still holds an unexpired lease and the clock has not moved backwards.
+     */
+    public void checkLease() {
+        if (this.clockMovedBackwards) {
+            throw new IllegalStateException("Clock moved backwards. Refusing to generate ids on node " + this.nodeId);
+        }
+        if (this.released) {
+            throw new IllegalStateException("The lease on worker id " + this.leasedId + " has been released. Refusing to generate ids on node " + this.nodeId);
+        }
+        long now = this.clock.millis();
+        if (now <= this.notBefore) {
+            throw new IllegalStateException("Clock moved behind the previous holder's last timestamp. Refusing to generate ids on node " + this.nodeId);
+        }
+        if (now >= this.leaseExpiresAt) {
+            throw new IllegalStateException("The lease on worker id " + this.leasedId + " has expired. Refusing to generate ids on node " + this.nodeId);
+        }
+    }
+
+    public long getDatacenterId() {
+        return this.leasedId >> WORKER_ID_BITS;
+    }
+
+    public long getWorkerId() {
+        return this.leasedId & ((1 << WORKER_ID_BITS) - 1);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
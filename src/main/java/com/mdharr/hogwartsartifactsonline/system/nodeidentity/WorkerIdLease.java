@@ -0,0 +1,69 @@
+package com.mdharr.hogwartsartifactsonline.system.nodeidentity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import java.io.Serializable;
+
+/**
+ * A row per worker id that has ever been handed out. The node that holds the lease keeps pushing expiresAt forward;
+ * once expiresAt has passed, any other node may take the worker id over. The holder also records the timestamp of the
+ * newest id it minted, and the next holder waits until its own clock has passed that timestamp before minting any.
+ */
+@Entity
+public class WorkerIdLease implements Serializable {
+
+    @Id
+    private Integer workerId;
+
+    private String nodeId;
+
+    private Long renewedAt; // Epoch millis of the last successful renewal.
+
+    private Long expiresAt; // Epoch millis after which the lease is up for grabs.
+
+    private Long lastTimestamp; // Epoch millis of the newest id the holder had minted when it last renewed or released.
+
+    public WorkerIdLease() {
+    }
+
+    public Integer getWorkerId() {
+        return workerId;
+    }
+
+    public void setWorkerId(Integer workerId) {
+        this.workerId = workerId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Long getRenewedAt() {
+        return renewedAt;
+    }
+
+    public void setRenewedAt(Long renewedAt) {
+        this.renewedAt = renewedAt;
+    }
+
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public void setLastTimestamp(Long lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+}
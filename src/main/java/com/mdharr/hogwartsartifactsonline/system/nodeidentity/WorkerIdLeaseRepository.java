@@ -0,0 +1,48 @@
+package com.mdharr.hogwartsartifactsonline.system.nodeidentity;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Every write is a single conditional statement, so two nodes racing for the same worker id can never both win.
+ */
+@Repository
+public interface WorkerIdLeaseRepository extends JpaRepository<WorkerIdLease, Integer> {
+
+    List<WorkerIdLease> findByExpiresAtLessThanOrderByWorkerId(Long now);
+
+    @Query("select l.workerId from WorkerIdLease l")
+    List<Integer> findAllWorkerIds();
+
+    // Fails with a DataIntegrityViolationException if another node inserted the same worker id first.
+    // The table is named, so Hibernate evicts nothing from the second-level cache instead of every region.
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "worker_id_lease"))
+    @Query(value = "insert into worker_id_lease (worker_id, node_id, renewed_at, expires_at) values (:workerId, :nodeId, :now, :expiresAt)", nativeQuery = true)
+    int insert(@Param("workerId") Integer workerId, @Param("nodeId") String nodeId, @Param("now") Long now, @Param("expiresAt") Long expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("update WorkerIdLease l set l.nodeId = :nodeId, l.renewedAt = :now, l.expiresAt = :expiresAt where l.workerId = :workerId and l.expiresAt < :now")
+    int takeOverExpired(@Param("workerId") Integer workerId, @Param("nodeId") String nodeId, @Param("now") Long now, @Param("expiresAt") Long expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("update WorkerIdLease l set l.renewedAt = :now, l.expiresAt = :expiresAt, l.lastTimestamp = :lastTimestamp where l.workerId = :workerId and l.nodeId = :nodeId")
+    int renew(@Param("workerId") Integer workerId, @Param("nodeId") String nodeId, @Param("now") Long now, @Param("expiresAt") Long expiresAt, @Param("lastTimestamp") Long lastTimestamp);
+
+    @Modifying
+    @Transactional
+    @Query("update WorkerIdLease l set l.expiresAt = :now, l.lastTimestamp = :lastTimestamp where l.workerId = :workerId and l.nodeId = :nodeId")
+    int release(@Param("workerId") Integer workerId, @Param("nodeId") String nodeId, @Param("now") Long now, @Param("lastTimestamp") Long lastTimestamp);
+}
@@ -2,12 +2,17 @@ package com.mdharr.hogwartsartifactsonline.wizard;
 
 import com.mdharr.hogwartsartifactsonline.artifact.Artifact;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "wizard")
 public class Wizard implements Serializable {
 
     @Id
@@ -17,8 +22,20 @@ public class Wizard implements Serializable {
     private String name;
 
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, mappedBy = "owner")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "wizard-artifacts")
     private List<Artifact> artifacts = new ArrayList<>();
 
+    // Also bumped when the artifacts collection changes, so two requests moving artifacts in or out of this wizard conflict.
+    @Version
+    private Integer version;
+
+    // Sent as Last-Modified. Also moves when the number of artifacts changes, see addArtifact() and WizardRepository.touch().
+    private Instant lastModified;
+
+    // Pre-computed by a GROUP BY count query for listings, so we don't have to load the artifacts collection just to count it.
+    @Transient
+    private Integer numberOfArtifacts;
+
     public Wizard() {}
 
     public Integer getId() {
@@ -37,32 +54,59 @@ public class Wizard implements Serializable {
         this.name = name;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.lastModified = Instant.now();
+    }
+
     public List<Artifact> getArtifacts() {
         return artifacts;
     }
 
     public void setArtifacts(List<Artifact> artifacts) {
         this.artifacts = artifacts;
+        this.numberOfArtifacts = null;
     }
 
     public void addArtifact(Artifact artifact) {
         artifact.setOwner(this);
         this.artifacts.add(artifact);
-    }
-
-    public void removeAllArtifacts() {
-        this.artifacts.stream().forEach(artifact -> artifact.setOwner(null));
-        this.artifacts = new ArrayList<>();
+        this.numberOfArtifacts = null;
+        touch(); // numberOfArtifacts changed, so this wizard is dirty and gets a new version, even if only the collection changed.
     }
 
     public void removeArtifact(Artifact artifactToBeAssigned) {
         // Remove artifact owner and remove artifact from this wizard's artifacts
         artifactToBeAssigned.setOwner(null);
         this.artifacts.remove(artifactToBeAssigned);
+        this.numberOfArtifacts = null;
+        touch();
     }
 
     public Integer getNumberOfArtifacts() {
-        return this.artifacts.size();
+        // Fall back to the collection only when no count has been pre-computed, or the collection has changed since.
+        return this.numberOfArtifacts != null ? this.numberOfArtifacts : this.artifacts.size();
+    }
+
+    public void setNumberOfArtifacts(Integer numberOfArtifacts) {
+        this.numberOfArtifacts = numberOfArtifacts;
     }
 
 }
@@ -0,0 +1,11 @@
+package com.mdharr.hogwartsartifactsonline.wizard;
+
+/**
+ * Interface projection for the number of artifacts owned by a wizard, computed by a GROUP BY query.
+ */
+public interface WizardArtifactCount {
+
+    Integer getWizardId();
+
+    Long getNumberOfArtifacts();
+}
@@ -1,12 +1,18 @@
 package com.mdharr.hogwartsartifactsonline.wizard;
 
+import com.mdharr.hogwartsartifactsonline.system.OptimisticLockRetrier;
 import com.mdharr.hogwartsartifactsonline.system.Result;
+import com.mdharr.hogwartsartifactsonline.system.SingleFlight;
 import com.mdharr.hogwartsartifactsonline.system.StatusCode;
+import com.mdharr.hogwartsartifactsonline.system.Validators;
 import com.mdharr.hogwartsartifactsonline.wizard.converter.WizardDtoToWizardConverter;
 import com.mdharr.hogwartsartifactsonline.wizard.converter.WizardToWizardDtoConverter;
+import com.mdharr.hogwartsartifactsonline.wizard.dto.ArtifactAssignmentSummary;
 import com.mdharr.hogwartsartifactsonline.wizard.dto.WizardDto;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.Valid;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,26 +27,66 @@ public class WizardController {
 
     private WizardDtoToWizardConverter wizardDtoToWizardConverter;
 
+    private OptimisticLockRetrier optimisticLockRetrier;
+
+    // Concurrent GET /wizards/{wizardId} for the same wizard share one lookup of its validators,
+    // and those whose copy is stale share one conversion.
+    private SingleFlight<Integer, Validators> validatorLoads;
+
+    private SingleFlight<Integer, FoundWizard> wizardLoads;
+
     public WizardController(WizardService wizardService,
                             WizardToWizardDtoConverter wizardToWizardDtoConverter,
-                            WizardDtoToWizardConverter wizardDtoToWizardConverter) {
+                            WizardDtoToWizardConverter wizardDtoToWizardConverter,
+                            OptimisticLockRetrier optimisticLockRetrier,
+                            MeterRegistry meterRegistry) {
         this.wizardService = wizardService;
         this.wizardToWizardDtoConverter = wizardToWizardDtoConverter;
         this.wizardDtoToWizardConverter = wizardDtoToWizardConverter;
+        this.optimisticLockRetrier = optimisticLockRetrier;
+        this.validatorLoads = new SingleFlight<>("wizardValidators", meterRegistry);
+        this.wizardLoads = new SingleFlight<>("wizard", meterRegistry);
+    }
+
+    // What a coalesced load hands to every waiting request. Unlike the Wizard entity, it is safe to share between threads.
+    private record FoundWizard(WizardDto wizardDto, Validators validators) {
     }
 
     @GetMapping
-    public Result findAllWizards() {
+    public Result findAllWizards(WebRequest request) {
         List<Wizard> foundWizards = this.wizardService.findAll();
+        if (Validators.ofRows(foundWizards, Wizard::getId, WizardController::validatorsOf).checkNotModified(request)) {
+            return null; // 304 Not Modified, without a body.
+        }
         List<WizardDto> wizardDtos = foundWizards.stream().map(this.wizardToWizardDtoConverter::convert).collect(Collectors.toList());
         return new Result(true, StatusCode.SUCCESS, "Find All Success", wizardDtos);
     }
 
     @GetMapping("/{wizardId}")
-    public Result findWizardById(@PathVariable Integer wizardId) {
-        Wizard foundWizard = this.wizardService.findById(wizardId);
-        WizardDto wizardDto = wizardToWizardDtoConverter.convert(foundWizard);
-        return new Result(true, StatusCode.SUCCESS, "Find One Success", wizardDto);
+    public Result findWizardById(@PathVariable Integer wizardId, WebRequest request) {
+        Validators validators = this.validatorLoads.load(wizardId, id -> validatorsOf(this.wizardService.findById(id)));
+        // Checked before the converter, which needs the wizard's number of artifacts.
+        if (validators.checkNotModified(request)) {
+            return null; // 304 Not Modified, without a body.
+        }
+        FoundWizard foundWizard = this.wizardLoads.load(wizardId, this::loadWizard);
+        if (!foundWizard.validators().equals(validators)) {
+            // We joined a load that read the wizard before the change behind the ETag we just sent. Read it again,
+            // so the body is never older than its ETag.
+            foundWizard = loadWizard(wizardId);
+        }
+        return new Result(true, StatusCode.SUCCESS, "Find One Success", foundWizard.wizardDto());
+    }
+
+    private FoundWizard loadWizard(Integer wizardId) {
+        Wizard wizard = this.wizardService.findById(wizardId);
+        this.wizardService.loadNumberOfArtifacts(List.of(wizard));
+        return new FoundWizard(this.wizardToWizardDtoConverter.convert(wizard), validatorsOf(wizard));
+    }
+
+    // Every change to numberOfArtifacts moves the wizard's version as well.
+    private static Validators validatorsOf(Wizard wizard) {
+        return Validators.of(wizard.getLastModified(), wizard.getVersion());
     }
 
     @PostMapping
@@ -54,20 +100,27 @@ public class WizardController {
     @PutMapping("/{wizardId}")
     public Result updateWizard(@PathVariable Integer wizardId, @Valid @RequestBody WizardDto wizardDto) {
         Wizard wizard = this.wizardDtoToWizardConverter.convert(wizardDto);
-        Wizard updatedWizard = this.wizardService.update(wizardId, wizard);
+        Wizard updatedWizard = this.optimisticLockRetrier.call(() -> this.wizardService.update(wizardId, wizard));
         WizardDto updatedWizardDto = this.wizardToWizardDtoConverter.convert(updatedWizard);
         return new Result(true, StatusCode.SUCCESS, "Update Success", updatedWizardDto);
     }
 
     @DeleteMapping("/{wizardId}")
     public Result deleteWizard(@PathVariable Integer wizardId) {
-        this.wizardService.delete(wizardId);
+        this.optimisticLockRetrier.run(() -> this.wizardService.delete(wizardId));
         return new Result(true, StatusCode.SUCCESS, "Delete Success");
     }
 
+    // Concurrent reassignments of the same artifact, or into and out of the same wizard, fail their version check and are retried.
     @PutMapping("/{wizardId}/artifacts/{artifactId}")
     public Result assignArtifact(@PathVariable Integer wizardId, @PathVariable String artifactId) {
-        this.wizardService.assignArtifact(wizardId, artifactId);
+        this.optimisticLockRetrier.run(() -> this.wizardService.assignArtifact(wizardId, artifactId));
         return new Result(true, StatusCode.SUCCESS, "Artifact Assignment Success", null);
     }
+
+    @PutMapping("/{wizardId}/artifacts")
+    public Result assignArtifacts(@PathVariable Integer wizardId, @RequestBody List<String> artifactIds) {
+        ArtifactAssignmentSummary summary = this.wizardService.assignArtifacts(wizardId, artifactIds);
+        return new Result(true, StatusCode.SUCCESS, "Artifact Assignment Success", summary);
+    }
 }
@@ -0,0 +1,55 @@
+package com.mdharr.hogwartsartifactsonline.wizard;
+
+import com.mdharr.hogwartsartifactsonline.system.ExistingIdFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+
+/**
+ * Ids of existing wizards, so GET /wizards/{wizardId} with a made-up id is a 404 without a query.
+ * WizardService records the misses and adds the ids it saves.
+ * <p>
+ * Wizard ids come from the database in ascending order, so a wizard id is its own position. Ids above the highest one
+ * a rebuild read, less id-filter.wizard-id-slack for inserts that were still open, always reach the database.
+ * Ids below 1 are never handed out.
+ */
+@Component
+public class WizardIdFilter extends ExistingIdFilter<Integer> {
+
+    private final int wizardIdSlack;
+
+    public WizardIdFilter(WizardRepository wizardRepository,
+                          @Value("${id-filter.expected-ids}") long expectedIds,
+                          @Value("${id-filter.false-positive-rate}") double falsePositiveRate,
+                          @Value("${id-filter.maximum-misses}") long maximumMisses,
+                          @Value("${id-filter.miss-time-to-live}") Duration missTimeToLive,
+                          @Value("${id-filter.wizard-id-slack}") int wizardIdSlack,
+                          MeterRegistry meterRegistry) {
+        super("wizard", wizardRepository::streamIds, expectedIds, falsePositiveRate, maximumMisses, missTimeToLive, meterRegistry);
+        this.wizardIdSlack = wizardIdSlack;
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${id-filter.rebuild-interval}", fixedDelayString = "${id-filter.rebuild-interval}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        super.rebuild();
+    }
+
+    @Override
+    protected long position(Integer wizardId) {
+        return wizardId >= 1 ? wizardId : -1;
+    }
+
+    @Override
+    protected long indexedUpTo(long rebuildStartedAt, long highestPosition) {
+        return highestPosition - this.wizardIdSlack;
+    }
+}
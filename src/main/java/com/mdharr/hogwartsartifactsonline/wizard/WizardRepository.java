@@ -1,8 +1,30 @@
 package com.mdharr.hogwartsartifactsonline.wizard;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface WizardRepository extends JpaRepository<Wizard, Integer> {
+
+    // Bumps version and lastModified of wizards whose numberOfArtifacts was changed by a bulk UPDATE of artifacts,
+    // so their ETags change too.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Wizard w set w.version = w.version + 1, w.lastModified = :now where w.id in :ids")
+    int touch(@Param("ids") Collection<Integer> ids, @Param("now") Instant now);
+
+    // Streams every id for WizardIdFilter.rebuild(). The returned Stream must be consumed inside a transaction and closed.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select w.id from Wizard w")
+    Stream<Integer> streamIds();
 }
@@ -1,12 +1,23 @@
 package com.mdharr.hogwartsartifactsonline.wizard;
 
 import com.mdharr.hogwartsartifactsonline.artifact.Artifact;
+import com.mdharr.hogwartsartifactsonline.artifact.ArtifactDtoCache;
 import com.mdharr.hogwartsartifactsonline.artifact.ArtifactRepository;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
+import com.mdharr.hogwartsartifactsonline.wizard.dto.ArtifactAssignmentSummary;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -16,38 +27,79 @@ public class WizardService {
 
     private final ArtifactRepository artifactRepository;
 
-    public WizardService(WizardRepository wizardRepository, ArtifactRepository artifactRepository) {
+    private final ArtifactDtoCache artifactDtoCache;
+
+    private final WizardIdFilter wizardIdFilter;
+
+    public WizardService(WizardRepository wizardRepository, ArtifactRepository artifactRepository, ArtifactDtoCache artifactDtoCache, WizardIdFilter wizardIdFilter) {
         this.wizardRepository = wizardRepository;
         this.artifactRepository = artifactRepository;
+        this.artifactDtoCache = artifactDtoCache;
+        this.wizardIdFilter = wizardIdFilter;
     }
 
     public List<Wizard> findAll() {
-        return this.wizardRepository.findAll();
+        List<Wizard> wizards = this.wizardRepository.findAll();
+        loadNumberOfArtifacts(wizards);
+        return wizards;
+    }
+
+    /**
+     * Sets numberOfArtifacts on each of the given wizards with a single GROUP BY query,
+     * instead of letting every wizard load its artifacts collection just to count it.
+     *
+     * @param wizards may contain nulls and duplicates
+     */
+    public void loadNumberOfArtifacts(Collection<Wizard> wizards) {
+        List<Integer> wizardIds = wizards.stream()
+                .filter(Objects::nonNull)
+                .map(Wizard::getId)
+                .distinct()
+                .toList();
+        if (wizardIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, Long> counts = this.artifactRepository.countByOwnerIds(wizardIds).stream()
+                .collect(Collectors.toMap(WizardArtifactCount::getWizardId, WizardArtifactCount::getNumberOfArtifacts));
+        wizards.stream()
+                .filter(Objects::nonNull)
+                .forEach(wizard -> wizard.setNumberOfArtifacts(counts.getOrDefault(wizard.getId(), 0L).intValue()));
     }
 
     public Wizard findById(Integer wizardId) {
+        if (!this.wizardIdFilter.mightExist(wizardId)) {
+            throw new ObjectNotFoundException("wizard", wizardId);
+        }
         return this.wizardRepository.findById(wizardId)
-                .orElseThrow(() -> new ObjectNotFoundException("wizard", wizardId));
+                .orElseThrow(() -> {
+                    this.wizardIdFilter.recordMiss(wizardId);
+                    return new ObjectNotFoundException("wizard", wizardId);
+                });
     }
 
     public Wizard save(Wizard newWizard) {
-        return this.wizardRepository.save(newWizard);
+        Wizard savedWizard = this.wizardRepository.save(newWizard);
+        this.wizardIdFilter.add(savedWizard.getId());
+        return savedWizard;
     }
 
     public Wizard update(Integer wizardId, Wizard updatedWizard) {
         return this.wizardRepository.findById(wizardId)
                 .map(oldWizard -> {
                     oldWizard.setName(updatedWizard.getName());
+                    // Cached artifacts of this wizard carry the old name.
+                    this.artifactDtoCache.evict(this.artifactRepository.findIdsByOwnerId(wizardId));
                     return this.wizardRepository.save(oldWizard);
                 })
                 .orElseThrow(() -> new ObjectNotFoundException("wizard", wizardId));
     }
 
     public void delete(Integer wizardId) {
-        Wizard wizardToBeDeleted = this.wizardRepository.findById(wizardId)
+        this.wizardRepository.findById(wizardId)
                 .orElseThrow(() -> new ObjectNotFoundException("wizard", wizardId));
-        // Before deletion, we will unassign this wizard's owned artifacts.
-        wizardToBeDeleted.removeAllArtifacts();
+        // Before deletion, we will unassign this wizard's owned artifacts, with one UPDATE however many there are.
+        this.artifactDtoCache.evict(this.artifactRepository.findIdsByOwnerId(wizardId));
+        this.artifactRepository.unassignOwner(wizardId);
         this.wizardRepository.deleteById(wizardId);
     }
 
@@ -60,6 +112,14 @@ public class WizardService {
         Wizard wizard = this.wizardRepository.findById(wizardId)
                 .orElseThrow(() -> new ObjectNotFoundException("wizard", wizardId));
 
+        // The artifact changes owner, and both owners' numberOfArtifacts change, so evict every artifact they own.
+        List<String> affectedArtifactIds = new ArrayList<>(this.artifactRepository.findIdsByOwnerId(wizardId));
+        affectedArtifactIds.add(artifactId);
+        if (artifactToBeAssigned.getOwner() != null) {
+            affectedArtifactIds.addAll(this.artifactRepository.findIdsByOwnerId(artifactToBeAssigned.getOwner().getId()));
+        }
+        this.artifactDtoCache.evict(affectedArtifactIds);
+
         // Assign artifact
         // We need to see if the artifact is already owned by some wizard
         if (artifactToBeAssigned.getOwner() != null) {
@@ -68,4 +128,38 @@ public class WizardService {
 
         wizard.addArtifact(artifactToBeAssigned);
     }
+
+    /**
+     * Assigns many artifacts to one wizard with a single UPDATE, instead of loading every artifact and both of its owners.
+     * Ids that do not exist are skipped and reported back, the others are still assigned.
+     */
+    public ArtifactAssignmentSummary assignArtifacts(Integer wizardId, List<String> artifactIds) {
+        Wizard wizard = this.wizardRepository.findById(wizardId)
+                .orElseThrow(() -> new ObjectNotFoundException("wizard", wizardId));
+
+        Set<String> requestedIds = new LinkedHashSet<>();
+        artifactIds.stream().filter(Objects::nonNull).forEach(requestedIds::add);
+        if (requestedIds.isEmpty()) {
+            return new ArtifactAssignmentSummary(0, List.of());
+        }
+
+        Set<String> existingIds = new HashSet<>(this.artifactRepository.findExistingIds(requestedIds));
+        List<String> missingIds = requestedIds.stream().filter(id -> !existingIds.contains(id)).toList();
+        if (existingIds.isEmpty()) {
+            return new ArtifactAssignmentSummary(0, missingIds);
+        }
+
+        // Same as in assignArtifact: the new owner's and every previous owner's numberOfArtifacts change.
+        List<String> affectedArtifactIds = new ArrayList<>(existingIds);
+        affectedArtifactIds.addAll(this.artifactRepository.findIdsSharingOwnerWith(existingIds, wizardId));
+        this.artifactDtoCache.evict(affectedArtifactIds);
+
+        // Both the new owner's and the previous owners' numberOfArtifacts change, and with them their ETags.
+        Set<Integer> affectedWizardIds = new HashSet<>(this.artifactRepository.findOwnerIds(existingIds));
+        affectedWizardIds.add(wizardId);
+
+        int assigned = this.artifactRepository.assignOwner(wizard, existingIds);
+        this.wizardRepository.touch(affectedWizardIds, Instant.now());
+        return new ArtifactAssignmentSummary(assigned, missingIds);
+    }
 }
@@ -0,0 +1,7 @@
+package com.mdharr.hogwartsartifactsonline.wizard.dto;
+
+import java.util.List;
+
+public record ArtifactAssignmentSummary(int assigned,
+                                        List<String> missingArtifactIds) {
+}
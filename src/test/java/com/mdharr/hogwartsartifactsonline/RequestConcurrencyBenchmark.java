@@ -0,0 +1,106 @@
+package com.mdharr.hogwartsartifactsonline;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second for bursts of concurrent GET /artifacts/{artifactId}?fields=id,name,owner, served by Tomcat's
+ * platform thread pool (virtualThreads=false, at most server.tomcat.threads.max requests at once) versus one virtual
+ * thread per request (virtualThreads=true). The fields selector skips ArtifactDtoCache, so every request runs its
+ * JDBC queries. Pinned virtual threads are reported on stdout through jdk.tracePinnedThreads.
+ * <p>
+ * Pinning audit: no synchronized block or ConcurrentHashMap/Caffeine compute in our code does I/O. Work that waits on
+ * files or the database holds ReentrantLocks instead: JwtKeyManager's key reload, and the rebuilds of
+ * ArtifactSearchIndex and ExistingIdFilter, which stream rows. ExistingIdFilter's remaining synchronized blocks and the
+ * compute calls in ArtifactDtoCache and VerifiedCredentialCache only touch memory. ArtifactDtoCache loads outside
+ * its Caffeine map, StatementMetrics logs outside its map, and IdWorker is CAS based.
+ * <p>
+ * Virtual threads need a Java 21 runtime, so build and run with -P java21 on a JDK 21. setUp() refuses
+ * virtualThreads=true on an older runtime rather than measuring the platform pool twice. The in-memory H2 database
+ * answers in microseconds, so this mostly measures scheduling overhead. Point spring.datasource.url at a networked
+ * database to see how each mode copes with real blocking.
+ * Run with: ./mvnw -P java21,benchmark test-compile exec:exec -Dbenchmark=RequestConcurrencyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class RequestConcurrencyBenchmark {
+
+    private static final int BURST_SIZE = 1000;
+
+    private static final String[] ARTIFACT_IDS = {
+            "1250808601744904191", "1250808601744904192", "1250808601744904193",
+            "1250808601744904194", "1250808601744904195", "1250808601744904196"
+    };
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    ConfigurableApplicationContext context;
+
+    HttpClient httpClient;
+
+    String baseUrl;
+
+    @Setup
+    public void setUp() {
+        if (this.virtualThreads && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("virtualThreads=true needs a Java 21 runtime, this is " + Runtime.version());
+        }
+        // Command line arguments, since properties() only sets defaults, which application.yml overrides.
+        this.context = new SpringApplicationBuilder(HogwartsArtifactsOnlineApplication.class)
+                .run("--server.port=0", "--logging.level.root=warn",
+                        "--spring.threads.virtual.enabled=" + this.virtualThreads,
+                        "--spring.datasource.hikari.maximum-pool-size=50");
+        if (Threading.VIRTUAL.isActive(this.context.getEnvironment()) != this.virtualThreads) {
+            throw new IllegalStateException("spring.threads.virtual.enabled did not take effect");
+        }
+        int port = ((WebServerApplicationContext) this.context).getWebServer().getPort();
+        this.baseUrl = "http://localhost:" + port + this.context.getEnvironment().getProperty("api.endpoint.base-url");
+        this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public int burst() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<HttpResponse<Void>>[] responses = new CompletableFuture[BURST_SIZE];
+        for (int i = 0; i < BURST_SIZE; i++) {
+            URI uri = URI.create(this.baseUrl + "/artifacts/" + ARTIFACT_IDS[i % ARTIFACT_IDS.length] + "?fields=id,name,owner");
+            responses[i] = this.httpClient.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(responses).join();
+        // Fast errors, e.g. 503s, would otherwise look like throughput.
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                throw new IllegalStateException("Got status " + response.join().statusCode());
+            }
+        }
+        return responses.length;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RequestConcurrencyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -2,6 +2,7 @@ package com.mdharr.hogwartsartifactsonline.artifact;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
+import com.mdharr.hogwartsartifactsonline.artifact.utils.IdWorker;
 import com.mdharr.hogwartsartifactsonline.system.StatusCode;
 import org.hamcrest.Matchers;
 import org.json.JSONObject;
@@ -15,6 +16,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -24,7 +26,12 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -38,6 +45,15 @@ public class ArtifactControllerIntegrationTest {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ArtifactIdFilter artifactIdFilter;
+
+    @Autowired
+    ArtifactSearchIndex artifactSearchIndex;
+
     @Value("${api.endpoint.base-url}")
     private String baseUrl;
 
@@ -59,12 +75,93 @@ public class ArtifactControllerIntegrationTest {
     @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD) // Resets H2 database; can be expensive.
     void testFindAllArtifactsSuccess() throws Exception {
         this.mockMvc.perform(MockMvcRequestBuilders.get(this.baseUrl + "/artifacts").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.message").value("Find All Success"))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(6)))
+                .andExpect(jsonPath("$.data.nextCursor").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Check findAllArtifacts walks pages with the next cursor (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindAllArtifactsWithCursorSuccess() throws Exception {
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("size", "4").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(4)))
+                .andExpect(jsonPath("$.data.content[0].id").value("1250808601744904191"))
+                .andExpect(jsonPath("$.data.nextCursor").value("1250808601744904194"));
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("size", "4").param("cursor", "1250808601744904194").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(2)))
+                .andExpect(jsonPath("$.data.content[0].id").value("1250808601744904195"))
+                .andExpect(jsonPath("$.data.nextCursor").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Check findAllArtifacts without paging (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindAllArtifactsUnpagedSuccess() throws Exception {
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("unpaged", "true").accept(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
                 .andExpect(jsonPath("$.message").value("Find All Success"))
                 .andExpect(jsonPath("$.data", Matchers.hasSize(6)));
     }
 
+    @Test
+    @DisplayName("Check findAllArtifacts returns only the requested fields (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindAllArtifactsWithFieldsSuccess() throws Exception {
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("fields", "id,name").param("size", "4").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(4)))
+                .andExpect(jsonPath("$.data.content[0].id").value("1250808601744904191"))
+                .andExpect(jsonPath("$.data.content[0].name").value("Deluminator"))
+                .andExpect(jsonPath("$.data.content[0].description").doesNotExist())
+                .andExpect(jsonPath("$.data.content[0].owner").doesNotExist())
+                .andExpect(jsonPath("$.data.nextCursor").value("1250808601744904194"));
+
+        // The cursor works without the id among the fields.
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("fields", "name").param("size", "4").param("cursor", "1250808601744904194").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(2)))
+                .andExpect(jsonPath("$.data.content[0].name").value("The Sword Of Gryffindor"))
+                .andExpect(jsonPath("$.data.content[0].id").doesNotExist())
+                .andExpect(jsonPath("$.data.nextCursor").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Check findArtifactById returns only the requested fields, with the owner (GET)")
+    void testFindArtifactByIdWithFieldsSuccess() throws Exception {
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904192").param("fields", "name,owner").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.message").value("Find One Success"))
+                .andExpect(jsonPath("$.data.name").value("Invisibility Cloak"))
+                .andExpect(jsonPath("$.data.owner.name").value("Harry Potter"))
+                .andExpect(jsonPath("$.data.owner.numberOfArtifacts").value(2))
+                .andExpect(jsonPath("$.data.id").doesNotExist())
+                .andExpect(jsonPath("$.data.description").doesNotExist());
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904199").param("fields", "name").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.code").value(StatusCode.NOT_FOUND));
+    }
+
+    @Test
+    @DisplayName("Check exportArtifacts streams every artifact as NDJSON (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testExportArtifactsSuccess() throws Exception {
+        MvcResult mvcResult = this.mockMvc.perform(get(this.baseUrl + "/artifacts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(6, lines.length);
+        JSONObject first = new JSONObject(lines[0]);
+        assertEquals("1250808601744904191", first.getString("id"));
+        assertEquals("Albus Dumbledore", first.getJSONObject("owner").getString("name"));
+    }
+
     @Test
     @DisplayName("Check findArtifactById (GET)")
     void testFindArtifactByIdSuccess() throws Exception {
@@ -111,7 +208,29 @@ public class ArtifactControllerIntegrationTest {
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
                 .andExpect(jsonPath("$.message").value("Find All Success"))
-                .andExpect(jsonPath("$.data", Matchers.hasSize(7)));
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(7)));
+    }
+
+    @Test
+    @DisplayName("Check addArtifacts with NDJSON (POST)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testAddArtifactsFromNdjsonSuccess() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            ndjson.append(this.objectMapper.writeValueAsString(new ArtifactDto(null, "Chocolate Frog Card " + i, "A collectible card.", "ImageUrl", null))).append('\n');
+        }
+        ndjson.append("{\"name\":\"\"}\n"); // Invalid, only fails itself.
+
+        this.mockMvc.perform(post(this.baseUrl + "/artifacts/batch").contentType(MediaType.APPLICATION_NDJSON).content(ndjson.toString()).accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.message").value("Batch Add Success"))
+                .andExpect(jsonPath("$.data.imported").value(3))
+                .andExpect(jsonPath("$.data.failed").value(1))
+                .andExpect(jsonPath("$.data.results[3].errors.name").value("name is required."));
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(9)));
     }
 
     @Test
@@ -136,7 +255,7 @@ public class ArtifactControllerIntegrationTest {
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
                 .andExpect(jsonPath("$.message").value("Find All Success"))
-                .andExpect(jsonPath("$.data", Matchers.hasSize(6)));
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(6)));
     }
 
     @Test
@@ -160,6 +279,162 @@ public class ArtifactControllerIntegrationTest {
                 .andExpect(jsonPath("$.data.imageUrl").value("Updated imageUrl"));
     }
 
+    @Test
+    @DisplayName("Check findArtifactById sees updates to a cached artifact (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindArtifactByIdAfterUpdate() throws Exception {
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904192").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.name").value("Invisibility Cloak"));
+
+        Artifact a = new Artifact();
+        a.setName("Updated artifact name");
+        a.setDescription("Updated description");
+        a.setImageUrl("Updated imageUrl");
+        this.mockMvc.perform(put(this.baseUrl + "/artifacts/1250808601744904192").contentType(MediaType.APPLICATION_JSON).content(this.objectMapper.writeValueAsString(a)).accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(true));
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904192").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.name").value("Updated artifact name"));
+    }
+
+    @Test
+    @DisplayName("Check findArtifactById finds a row inserted without going through this node (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindArtifactByIdInsertedElsewhere() throws Exception {
+        // Like another node sharing the database would, after this one indexed the existing ids.
+        String artifactId = String.valueOf(new IdWorker(31, 31).nextId());
+        this.jdbcTemplate.update("insert into artifact (id, name, description, image_url, version, last_modified) values (?, ?, ?, ?, 0, current_timestamp)",
+                artifactId, "Sorting Hat", "A hat that sorts students into houses.", "ImageUrl");
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/" + artifactId).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data.name").value("Sorting Hat"));
+    }
+
+    @Test
+    @DisplayName("Check findArtifactById finds a row with an old id inserted elsewhere once the id filter is rebuilt (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindArtifactByIdInsertedElsewhereAfterRebuild() throws Exception {
+        this.jdbcTemplate.update("insert into artifact (id, name, description, image_url, version, last_modified) values (?, ?, ?, ?, 0, current_timestamp)",
+                "1250808601744904197", "Sorting Hat", "A hat that sorts students into houses.", "ImageUrl");
+
+        // Minted long before the last rebuild and not indexed, so it is answered without a query.
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904197").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.code").value(StatusCode.NOT_FOUND));
+
+        this.artifactIdFilter.rebuild();
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904197").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data.name").value("Sorting Hat"));
+    }
+
+    @Test
+    @DisplayName("Check searchArtifacts finds a row inserted elsewhere once the index is rebuilt (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testSearchArtifactsAfterRebuild() throws Exception {
+        this.jdbcTemplate.update("insert into artifact (id, name, description, image_url, version, last_modified) values (?, ?, ?, ?, 0, current_timestamp)",
+                "1250808601744904197", "Sorting Hat", "A hat that sorts students into houses.", "ImageUrl");
+
+        this.artifactSearchIndex.rebuild();
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/search").param("q", "sort").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data", Matchers.hasSize(1)))
+                .andExpect(jsonPath("$.data[0].name").value("Sorting Hat"));
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/search").param("q", "cloak").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data[0].id").value("1250808601744904192"));
+    }
+
+    @Test
+    @DisplayName("Check findArtifactById answers 304 until the artifact or its owner changes (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindArtifactByIdNotModified() throws Exception {
+        String eTag = this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904192").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904192").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+
+        // Moving another of Harry Potter's artifacts changes the owner's numberOfArtifacts embedded in this one.
+        this.mockMvc.perform(put(this.baseUrl + "/wizards/3/artifacts/1250808601744904194").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(true));
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904192").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.owner.numberOfArtifacts").value(1));
+    }
+
+    @Test
+    @DisplayName("Check findAllArtifacts answers 304 until the catalog changes (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindAllArtifactsNotModified() throws Exception {
+        String eTag = this.mockMvc.perform(get(this.baseUrl + "/artifacts").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        this.mockMvc.perform(delete(this.baseUrl + "/artifacts/1250808601744904191").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(true));
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(5)));
+    }
+
+    @Test
+    @DisplayName("Check a page of findAllArtifacts only changes its ETag when its own rows change (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindAllArtifactsPageNotModified() throws Exception {
+        String eTag = this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("size", "2").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // 1250808601744904196 is not on the first page, and has no owner there.
+        Artifact a = new Artifact();
+        a.setName("Updated artifact name");
+        a.setDescription("Updated description");
+        a.setImageUrl("Updated imageUrl");
+        this.mockMvc.perform(put(this.baseUrl + "/artifacts/1250808601744904196").contentType(MediaType.APPLICATION_JSON).content(this.objectMapper.writeValueAsString(a)).accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(true));
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("size", "2").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        this.mockMvc.perform(put(this.baseUrl + "/artifacts/1250808601744904192").contentType(MediaType.APPLICATION_JSON).content(this.objectMapper.writeValueAsString(a)).accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(true));
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("size", "2").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content[1].name").value("Updated artifact name"));
+    }
+
+    @Test
+    @DisplayName("Check findArtifactById sees owner changes of a cached artifact (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindArtifactByIdAfterAssignment() throws Exception {
+        // 1250808601744904194 is owned by Harry Potter, who also owns 1250808601744904192.
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904192").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.owner.numberOfArtifacts").value(2));
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904194").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.owner.name").value("Harry Potter"));
+
+        this.mockMvc.perform(put(this.baseUrl + "/wizards/3/artifacts/1250808601744904194").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(true));
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904194").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.owner.name").value("Neville Longbottom"))
+                .andExpect(jsonPath("$.data.owner.numberOfArtifacts").value(2));
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904192").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.owner.numberOfArtifacts").value(1));
+    }
+
     @Test
     @DisplayName("Check updateArtifact with non-existent id (PUT)")
     void testUpdateArtifactErrorWithNonExistentId() throws Exception {
@@ -3,6 +3,7 @@ package com.mdharr.hogwartsartifactsonline.artifact;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
+import com.mdharr.hogwartsartifactsonline.system.CursorPage;
 import com.mdharr.hogwartsartifactsonline.system.StatusCode;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
 import org.hamcrest.Matchers;
@@ -17,17 +18,24 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 @SpringBootTest
 @AutoConfigureMockMvc(addFilters = false) // the addFilters flag turns off Spring Security for this Unit test
@@ -42,6 +50,9 @@ class ArtifactControllerTest {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    ArtifactDtoCache artifactDtoCache;
+
     List<Artifact> artifacts;
 
     @Value("${api.endpoint.base-url}")
@@ -49,6 +60,7 @@ class ArtifactControllerTest {
 
     @BeforeEach
     void setUp() {
+        this.artifactDtoCache.evictAll(); // The cache outlives the mocked service between test cases.
 
         this.artifacts = new ArrayList<>();
 
@@ -99,6 +111,28 @@ class ArtifactControllerTest {
     void tearDown() {
     }
 
+    @Test
+    void testSearchArtifactsSuccess() throws Exception {
+        // Given
+        given(this.artifactService.search("cloak", 20)).willReturn(List.of(this.artifacts.get(1)));
+
+        // When and then
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/search").param("q", "cloak").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.message").value("Search Success"))
+                .andExpect(jsonPath("$.data", Matchers.hasSize(1)))
+                .andExpect(jsonPath("$.data[0].id").value("1250808601744904192"));
+    }
+
+    @Test
+    void testFindAllArtifactsErrorWithUnknownField() throws Exception {
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("fields", "id,price").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(false))
+                .andExpect(jsonPath("$.code").value(StatusCode.INVALID_ARGUMENT))
+                .andExpect(jsonPath("$.message").value("Unknown field price, expected any of id, name, description, imageUrl and owner."));
+    }
+
     @Test
     void testFindArtifactByIdSuccess() throws Exception {
 
@@ -115,6 +149,23 @@ class ArtifactControllerTest {
 
     }
 
+    @Test
+    void testFindArtifactByIdIsCached() throws Exception {
+
+        // Given
+        given(this.artifactService.findById("1250808601744904191")).willReturn(this.artifacts.get(0));
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904191").accept(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$.flag").value(true))
+                    .andExpect(jsonPath("$.data.name").value("Deluminator"));
+        }
+
+        // Then
+        verify(this.artifactService, times(1)).findById("1250808601744904191");
+    }
+
     @Test
     void testFindArtifactByIdNotFound() throws Exception {
 
@@ -134,7 +185,7 @@ class ArtifactControllerTest {
         // Given
         given(this.artifactService.findAll()).willReturn(this.artifacts);
         // When and then
-        this.mockMvc.perform(get(this.baseUrl + "/artifacts").accept(MediaType.APPLICATION_JSON))
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("unpaged", "true").accept(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.flag").value(true))
                 .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
                 .andExpect(jsonPath("$.message").value("Find All Success"))
@@ -145,6 +196,56 @@ class ArtifactControllerTest {
                 .andExpect(jsonPath("$.data[1].name").value("Invisibility Cloak"));
     }
 
+    @Test
+    void testFindArtifactPageSuccess() throws Exception {
+        // Given
+        given(this.artifactService.findPage(null, 2)).willReturn(new CursorPage<>(this.artifacts.subList(0, 2), 2, "1250808601744904192"));
+        // When and then
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("size", "2").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.message").value("Find All Success"))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(2)))
+                .andExpect(jsonPath("$.data.content[0].id").value("1250808601744904191"))
+                .andExpect(jsonPath("$.data.content[1].id").value("1250808601744904192"))
+                .andExpect(jsonPath("$.data.size").value(2))
+                .andExpect(jsonPath("$.data.nextCursor").value("1250808601744904192"));
+    }
+
+    @Test
+    void testFindArtifactPageSizeIsCapped() throws Exception {
+        // Given
+        given(this.artifactService.findPage("1250808601744904192", 100)).willReturn(new CursorPage<>(this.artifacts.subList(2, 6), 100, null));
+        // When and then
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").param("cursor", "1250808601744904192").param("size", "100000").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(4)))
+                .andExpect(jsonPath("$.data.size").value(100))
+                .andExpect(jsonPath("$.data.nextCursor").isEmpty());
+    }
+
+    @Test
+    void testExportArtifactsSuccess() throws Exception {
+        // Given
+        doAnswer(invocation -> {
+            Consumer<Artifact> consumer = invocation.getArgument(0);
+            this.artifacts.subList(0, 2).forEach(consumer);
+            return null;
+        }).when(this.artifactService).exportAll(Mockito.any());
+
+        // When and then
+        MvcResult mvcResult = this.mockMvc.perform(get(this.baseUrl + "/artifacts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("1250808601744904191", this.objectMapper.readValue(lines[0], ArtifactDto.class).id());
+        assertEquals("Invisibility Cloak", this.objectMapper.readValue(lines[1], ArtifactDto.class).name());
+    }
+
     @Test
     void testAddArtifactSuccess() throws Exception {
         // Given
@@ -175,6 +276,66 @@ class ArtifactControllerTest {
                 .andExpect(jsonPath("$.data.imageUrl").value(savedArtifact.getImageUrl()));
     }
 
+    @Test
+    void testAddArtifactsSuccess() throws Exception {
+        // Given. The second artifact has no name.
+        List<ArtifactDto> artifactDtos = List.of(
+                new ArtifactDto(null, "Remembrall", "A Remembrall was a magical large marble-sized glass ball.", "ImageUrl", null),
+                new ArtifactDto(null, "", "No name", "ImageUrl", null),
+                new ArtifactDto(null, "Time-Turner", "A Time-Turner lets its user travel back in time.", "ImageUrl", null));
+
+        String json = this.objectMapper.writeValueAsString(artifactDtos);
+
+        given(this.artifactService.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+            List<Artifact> newArtifacts = invocation.getArgument(0);
+            for (int i = 0; i < newArtifacts.size(); i++) {
+                newArtifacts.get(i).setId("125080860174490420" + i);
+            }
+            return newArtifacts;
+        });
+
+        // When and then
+        this.mockMvc.perform(post(this.baseUrl + "/artifacts/batch").contentType(MediaType.APPLICATION_JSON).content(json).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.message").value("Batch Add Success"))
+                .andExpect(jsonPath("$.data.imported").value(2))
+                .andExpect(jsonPath("$.data.failed").value(1))
+                .andExpect(jsonPath("$.data.results[0].success").value(true))
+                .andExpect(jsonPath("$.data.results[0].id").value("1250808601744904200"))
+                .andExpect(jsonPath("$.data.results[1].success").value(false))
+                .andExpect(jsonPath("$.data.results[1].errors.name").value("name is required."))
+                .andExpect(jsonPath("$.data.results[2].index").value(2))
+                .andExpect(jsonPath("$.data.results[2].id").value("1250808601744904201"));
+        verify(this.artifactService, times(1)).saveAll(Mockito.anyList());
+    }
+
+    @Test
+    void testAddArtifactsFromNdjsonReportsMalformedLines() throws Exception {
+        // Given
+        String ndjson = """
+                {"name":"Remembrall","description":"A Remembrall was a magical large marble-sized glass ball.","imageUrl":"ImageUrl"}
+                {"name":"Broken",
+                {"name":"Time-Turner","description":"A Time-Turner lets its user travel back in time.","imageUrl":"ImageUrl"}
+                """;
+
+        given(this.artifactService.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+            List<Artifact> newArtifacts = invocation.getArgument(0);
+            newArtifacts.forEach(artifact -> artifact.setId("id-" + artifact.getName()));
+            return newArtifacts;
+        });
+
+        // When and then
+        this.mockMvc.perform(post(this.baseUrl + "/artifacts/batch").contentType(MediaType.APPLICATION_NDJSON).content(ndjson).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.data.imported").value(2))
+                .andExpect(jsonPath("$.data.failed").value(1))
+                .andExpect(jsonPath("$.data.results[0].id").value("id-Remembrall"))
+                .andExpect(jsonPath("$.data.results[1].success").value(false))
+                .andExpect(jsonPath("$.data.results[1].errors.json").isNotEmpty())
+                .andExpect(jsonPath("$.data.results[2].id").value("id-Time-Turner"));
+    }
+
     @Test
     void testUpdateArtifactSuccess() throws Exception {
         // Given
@@ -0,0 +1,115 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
+import com.mdharr.hogwartsartifactsonline.system.Validators;
+import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArtifactDtoCacheTest {
+
+    MeterRegistry meterRegistry;
+
+    ArtifactDtoCache artifactDtoCache;
+
+    AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.artifactDtoCache = new ArtifactDtoCache(100, Duration.ofMinutes(10), this.meterRegistry);
+        this.loads = new AtomicInteger();
+    }
+
+    @Test
+    void testGetLoadsOnceThenHits() {
+        // When
+        this.artifactDtoCache.get("1250808601744904191", this::load);
+        ArtifactDtoCache.Entry entry = this.artifactDtoCache.get("1250808601744904191", this::load);
+
+        // Then
+        assertThat(entry.artifactDto().name()).isEqualTo("Deluminator");
+        assertThat(entry.validators().eTag()).isEqualTo("\"0\"");
+        assertThat(this.loads.get()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("cache.gets").tag("cache", "artifactDtos").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("cache.hit.ratio").tag("cache", "artifactDtos").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testEvictForcesReload() {
+        // Given
+        this.artifactDtoCache.get("1250808601744904191", this::load);
+        this.artifactDtoCache.get("1250808601744904192", this::load);
+
+        // When
+        this.artifactDtoCache.evict(List.of("1250808601744904191"));
+        this.artifactDtoCache.get("1250808601744904191", this::load);
+        this.artifactDtoCache.get("1250808601744904192", this::load);
+
+        // Then. Only the evicted id is loaded again.
+        assertThat(this.loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testEvictionDuringLoadIsNotUndone() {
+        // Given. The artifact changes and is evicted while its old state is being loaded.
+        this.artifactDtoCache.get("1250808601744904191", id -> {
+            ArtifactDtoCache.Entry stale = load(id);
+            this.artifactDtoCache.evict(id);
+            return stale;
+        });
+
+        // When
+        this.artifactDtoCache.get("1250808601744904191", this::load);
+
+        // Then. The stale entry was not cached.
+        assertThat(this.loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testEvictionOfAnotherIdDuringLoadStillCaches() {
+        // Given. Another artifact changes while this one is being loaded.
+        assertThat(ArtifactDtoCache.stripe("1250808601744904192")).isNotEqualTo(ArtifactDtoCache.stripe("1250808601744904191"));
+        this.artifactDtoCache.get("1250808601744904191", id -> {
+            ArtifactDtoCache.Entry entry = load(id);
+            this.artifactDtoCache.evict("1250808601744904192");
+            return entry;
+        });
+
+        // When
+        this.artifactDtoCache.get("1250808601744904191", this::load);
+
+        // Then. The entry was cached.
+        assertThat(this.loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testNotFoundIsNotCached() {
+        // When
+        assertThrows(ObjectNotFoundException.class, () -> this.artifactDtoCache.get("1250808601744904199", id -> {
+            this.loads.incrementAndGet();
+            throw new ObjectNotFoundException("artifact", id);
+        }));
+        assertThrows(ObjectNotFoundException.class, () -> this.artifactDtoCache.get("1250808601744904199", id -> {
+            this.loads.incrementAndGet();
+            throw new ObjectNotFoundException("artifact", id);
+        }));
+
+        // Then
+        assertThat(this.loads.get()).isEqualTo(2);
+    }
+
+    private ArtifactDtoCache.Entry load(String id) {
+        this.loads.incrementAndGet();
+        return new ArtifactDtoCache.Entry(new ArtifactDto(id, "Deluminator", "Description", "ImageUrl", null), Validators.of(null, 0));
+    }
+}
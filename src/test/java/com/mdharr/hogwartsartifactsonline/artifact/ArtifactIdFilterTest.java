@@ -0,0 +1,59 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.mdharr.hogwartsartifactsonline.artifact.utils.IdWorker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ArtifactIdFilterTest {
+
+    @Mock
+    ArtifactRepository artifactRepository;
+
+    ArtifactIdFilter artifactIdFilter;
+
+    @BeforeEach
+    void setUp() {
+        given(this.artifactRepository.streamIds()).willReturn(Stream.of("1250808601744904191", "1250808601744904192"));
+        this.artifactIdFilter = new ArtifactIdFilter(this.artifactRepository, 1000, 0.01, 1000, Duration.ofSeconds(5),
+                Duration.ofMinutes(1), new SimpleMeterRegistry());
+        this.artifactIdFilter.rebuild();
+    }
+
+    @Test
+    void testIndexedIdMightExist() {
+        assertThat(this.artifactIdFilter.mightExist("1250808601744904192")).isTrue();
+    }
+
+    @Test
+    void testMissingIdMintedBeforeTheRebuildIsRejected() {
+        assertThat(this.artifactIdFilter.mightExist("1250808601744904197")).isFalse();
+    }
+
+    @Test
+    void testIdJustMintedByAnotherNodeMightExist() {
+        // Given
+        String artifactId = String.valueOf(new IdWorker(31, 31).nextId());
+
+        // When and Then
+        assertThat(this.artifactIdFilter.mightExist(artifactId)).isTrue();
+    }
+
+    @Test
+    void testIdsNoNodeCouldHaveMintedAreRejected() {
+        assertThat(this.artifactIdFilter.mightExist("made-up")).isFalse();
+        assertThat(this.artifactIdFilter.mightExist("-1250808601744904192")).isFalse();
+        // Minted in 2080.
+        assertThat(this.artifactIdFilter.mightExist(String.valueOf(Long.MAX_VALUE))).isFalse();
+    }
+}
@@ -0,0 +1,74 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.mdharr.hogwartsartifactsonline.HogwartsArtifactsOnlineApplication;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second inserted one artifact per transaction, like repeated POST /artifacts calls,
+ * versus ArtifactService.saveAll() with one id block and JDBC batching per chunk, like POST /artifacts/batch.
+ * Runs against the application's in-memory H2 database, so absolute numbers flatter both paths.
+ * Run with: ./mvnw -P benchmark test-compile exec:exec -Dbenchmark=ArtifactImportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArtifactImportBenchmark {
+
+    private static final int CHUNK_SIZE = 500;
+
+    ConfigurableApplicationContext context;
+
+    ArtifactService artifactService;
+
+    @Setup
+    public void setUp() {
+        this.context = new SpringApplicationBuilder(HogwartsArtifactsOnlineApplication.class)
+                .properties("server.port=0", "spring.jpa.show-sql=false", "logging.level.root=warn")
+                .run();
+        this.artifactService = this.context.getBean(ArtifactService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public Artifact singleItem() {
+        return this.artifactService.save(newArtifact());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public List<Artifact> batch() {
+        List<Artifact> newArtifacts = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            newArtifacts.add(newArtifact());
+        }
+        return this.artifactService.saveAll(newArtifacts);
+    }
+
+    private static Artifact newArtifact() {
+        Artifact artifact = new Artifact();
+        artifact.setName("Chocolate Frog Card");
+        artifact.setDescription("A collectible card that comes with every Chocolate Frog.");
+        artifact.setImageUrl("ImageUrl");
+        return artifact;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ArtifactImportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
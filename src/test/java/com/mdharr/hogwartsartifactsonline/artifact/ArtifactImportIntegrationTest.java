@@ -0,0 +1,76 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
+import com.mdharr.hogwartsartifactsonline.system.StatusCode;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+
+@SpringBootTest(properties = "artifact-import.chunk-size=2")
+@AutoConfigureMockMvc(addFilters = false)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DisplayName("Integration tests for POST /artifacts/batch")
+@Tag("integration")
+class ArtifactImportIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Value("${api.endpoint.base-url}")
+    String baseUrl;
+
+    @Test
+    @DisplayName("Check a chunk the database rejects only fails its own items")
+    void testFailedChunkOnlyFailsItsItems() throws Exception {
+        // Narrower than what ArtifactDto allows, so the insert itself fails.
+        this.jdbcTemplate.execute("ALTER TABLE artifact ALTER COLUMN image_url SET DATA TYPE VARCHAR(20)");
+        String tooLongForColumn = "https://example.com/" + "x".repeat(20);
+        List<ArtifactDto> artifactDtos = List.of(
+                new ArtifactDto(null, "Chocolate Frog Card 0", "A collectible card.", "ImageUrl", null),
+                new ArtifactDto(null, "Chocolate Frog Card 1", "A collectible card.", "ImageUrl", null),
+                new ArtifactDto(null, "Chocolate Frog Card 2", "A collectible card.", tooLongForColumn, null),
+                new ArtifactDto(null, "Chocolate Frog Card 3", "A collectible card.", "ImageUrl", null),
+                new ArtifactDto(null, "Chocolate Frog Card 4", "A collectible card.", "ImageUrl", null),
+                new ArtifactDto(null, "Chocolate Frog Card 5", "x".repeat(256), "ImageUrl", null));
+
+        this.mockMvc.perform(post(this.baseUrl + "/artifacts/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(this.objectMapper.writeValueAsString(artifactDtos)).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.message").value("Batch Add Success"))
+                .andExpect(jsonPath("$.data.imported").value(3))
+                .andExpect(jsonPath("$.data.failed").value(3))
+                .andExpect(jsonPath("$.data.results[0].success").value(true))
+                .andExpect(jsonPath("$.data.results[1].success").value(true))
+                // The second chunk is rolled back as a whole.
+                .andExpect(jsonPath("$.data.results[2].errors.artifact", Matchers.startsWith("Could not be saved: ")))
+                .andExpect(jsonPath("$.data.results[3].errors.artifact", Matchers.startsWith("Could not be saved: ")))
+                .andExpect(jsonPath("$.data.results[4].success").value(true))
+                .andExpect(jsonPath("$.data.results[5].errors.description").value("description must be at most 255 characters."));
+
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data.content", Matchers.hasSize(9)));
+    }
+}
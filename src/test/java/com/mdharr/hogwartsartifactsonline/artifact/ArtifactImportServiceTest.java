@@ -0,0 +1,90 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import com.mdharr.hogwartsartifactsonline.artifact.converter.ArtifactDtoToArtifactConverter;
+import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
+import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactImportSummary;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ArtifactImportServiceTest {
+
+    @Mock
+    ArtifactService artifactService;
+
+    ArtifactImportService artifactImportService;
+
+    @BeforeEach
+    void setUp() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        this.artifactImportService = new ArtifactImportService(this.artifactService, new ArtifactDtoToArtifactConverter(), validator, 2);
+    }
+
+    @Test
+    void testImportSavesValidItemsInChunks() {
+        // Given
+        given(this.artifactService.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+            List<Artifact> newArtifacts = invocation.getArgument(0);
+            newArtifacts.forEach(artifact -> artifact.setId("id-" + artifact.getName()));
+            return newArtifacts;
+        });
+        ArtifactImportService.ArtifactImport artifactImport = this.artifactImportService.begin();
+
+        // When
+        artifactImport.add(artifactDto("Remembrall"));
+        artifactImport.add(artifactDto(null));
+        artifactImport.add(artifactDto("Time-Turner"));
+        artifactImport.add(artifactDto("Pensieve"));
+        ArtifactImportSummary summary = artifactImport.finish();
+
+        // Then. One full chunk, then the rest on finish().
+        assertThat(summary.imported()).isEqualTo(3);
+        assertThat(summary.failed()).isEqualTo(1);
+        assertThat(summary.results().get(0).id()).isEqualTo("id-Remembrall");
+        assertThat(summary.results().get(1).errors()).containsEntry("name", "name is required.");
+        assertThat(summary.results().get(3).id()).isEqualTo("id-Pensieve");
+        verify(this.artifactService, times(2)).saveAll(Mockito.anyList());
+    }
+
+    @Test
+    void testFailedChunkOnlyFailsItsOwnItems() {
+        // Given. The first chunk is rejected by the database, the second one is saved.
+        given(this.artifactService.saveAll(Mockito.anyList()))
+                .willThrow(new PersistenceException("value too long"))
+                .willAnswer(invocation -> {
+                    List<Artifact> newArtifacts = invocation.getArgument(0);
+                    newArtifacts.forEach(artifact -> artifact.setId("id-" + artifact.getName()));
+                    return newArtifacts;
+                });
+        ArtifactImportService.ArtifactImport artifactImport = this.artifactImportService.begin();
+
+        // When
+        List.of("Remembrall", "Time-Turner", "Pensieve").forEach(name -> artifactImport.add(artifactDto(name)));
+        ArtifactImportSummary summary = artifactImport.finish();
+
+        // Then
+        assertThat(summary.imported()).isEqualTo(1);
+        assertThat(summary.failed()).isEqualTo(2);
+        assertThat(summary.results().get(0).errors().get("artifact")).isEqualTo("Could not be saved: value too long");
+        assertThat(summary.results().get(1).success()).isFalse();
+        assertThat(summary.results().get(2).id()).isEqualTo("id-Pensieve");
+    }
+
+    private static ArtifactDto artifactDto(String name) {
+        return new ArtifactDto(null, name, "Description", "ImageUrl", null);
+    }
+}
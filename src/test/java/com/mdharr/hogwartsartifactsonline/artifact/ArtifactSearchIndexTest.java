@@ -0,0 +1,110 @@
+package com.mdharr.hogwartsartifactsonline.artifact;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ArtifactSearchIndexTest {
+
+    @Mock
+    ArtifactRepository artifactRepository;
+
+    ArtifactSearchIndex artifactSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        given(this.artifactRepository.streamSearchDocuments()).willReturn(Stream.of(
+                new ArtifactSearchDocument("1250808601744904192", "Invisibility Cloak", "An invisibility cloak is used to make the wearer invisible."),
+                new ArtifactSearchDocument("1250808601744904193", "Elder Wand", "The Elder Wand is an extremely powerful wand made of elder wood with a core of Thestral tail hair."),
+                new ArtifactSearchDocument("1250808601744904195", "The Sword Of Gryffindor", "A goblin-made sword. It was once owned by Godric Gryffindor."),
+                new ArtifactSearchDocument("1250808601744904196", "Resurrection Stone", "The Resurrection Stone allows the holder to bring back deceased loved ones.")));
+        this.artifactSearchIndex = new ArtifactSearchIndex(this.artifactRepository);
+        this.artifactSearchIndex.rebuild();
+    }
+
+    @Test
+    void testSearchMatchesPrefixesOfEveryWord() {
+        assertThat(this.artifactSearchIndex.search("inv cl", 10)).containsExactly("1250808601744904192");
+        assertThat(this.artifactSearchIndex.search("inv wand", 10)).isEmpty();
+    }
+
+    @Test
+    void testSearchIgnoresCaseAndPunctuation() {
+        assertThat(this.artifactSearchIndex.search("Godric, GRYFFINDOR", 10)).containsExactly("1250808601744904195");
+        assertThat(this.artifactSearchIndex.search("  ?! ", 10)).isEmpty();
+    }
+
+    @Test
+    void testSearchRanksNameMatchesFirst() {
+        // Given. "stone" is in the Resurrection Stone's name, and only in the other artifact's description.
+        this.artifactSearchIndex.index(new Artifact("1250808601744904197", "Marvolo Gaunt's Ring", "A ring set with a black stone.", "ImageUrl"));
+
+        // When and then
+        assertThat(this.artifactSearchIndex.search("stone", 10)).containsExactly("1250808601744904196", "1250808601744904197");
+        assertThat(this.artifactSearchIndex.search("stone", 1)).containsExactly("1250808601744904196");
+    }
+
+    @Test
+    void testSearchRanksExactMatchesAbovePrefixMatches() {
+        // Given
+        this.artifactSearchIndex.index(new Artifact("1250808601744904198", "Wandering Quill", "A quill that writes by itself.", "ImageUrl"));
+
+        // When and then
+        assertThat(this.artifactSearchIndex.search("wand", 10)).containsExactly("1250808601744904193", "1250808601744904198");
+    }
+
+    @Test
+    void testIndexReplacesOldTerms() {
+        // When
+        this.artifactSearchIndex.index(new Artifact("1250808601744904193", "Deathstick", "Another name of the most powerful wand.", "ImageUrl"));
+
+        // Then
+        assertThat(this.artifactSearchIndex.search("elder", 10)).isEmpty();
+        assertThat(this.artifactSearchIndex.search("death", 10)).containsExactly("1250808601744904193");
+    }
+
+    @Test
+    void testRemoveDropsArtifact() {
+        // When
+        this.artifactSearchIndex.remove("1250808601744904192");
+
+        // Then
+        assertThat(this.artifactSearchIndex.search("invisibility", 10)).isEmpty();
+        assertThat(this.artifactSearchIndex.search("wand", 10)).containsExactly("1250808601744904193");
+    }
+
+    @Test
+    void testTokenizeStripsAccents() {
+        assertThat(ArtifactSearchIndex.tokenize("Épée de Gryffindor-Élite")).containsExactly("epee", "de", "gryffindor", "elite");
+    }
+
+    @Test
+    void testChangesDuringARebuildAreKept() {
+        // Given. An artifact is saved and another one deleted while the rebuild is reading, too late for what it read.
+        List<ArtifactSearchDocument> snapshot = List.of(
+                new ArtifactSearchDocument("1250808601744904192", "Invisibility Cloak", "An invisibility cloak is used to make the wearer invisible."),
+                new ArtifactSearchDocument("1250808601744904193", "Elder Wand", "The Elder Wand is an extremely powerful wand made of elder wood with a core of Thestral tail hair."));
+        given(this.artifactRepository.streamSearchDocuments()).willAnswer(invocation -> {
+            this.artifactSearchIndex.index(new Artifact("1250808601744904197", "Marvolo Gaunt's Ring", "A ring set with a black stone.", "ImageUrl"));
+            this.artifactSearchIndex.remove("1250808601744904193");
+            return snapshot.stream();
+        });
+
+        // When
+        this.artifactSearchIndex.rebuild();
+
+        // Then
+        assertThat(this.artifactSearchIndex.search("ring", 10)).containsExactly("1250808601744904197");
+        assertThat(this.artifactSearchIndex.search("elder", 10)).isEmpty();
+        assertThat(this.artifactSearchIndex.search("cloak", 10)).containsExactly("1250808601744904192");
+    }
+}
@@ -2,8 +2,12 @@ package com.mdharr.hogwartsartifactsonline.artifact;
 
 import com.mdharr.hogwartsartifactsonline.artifact.dto.ArtifactDto;
 import com.mdharr.hogwartsartifactsonline.artifact.utils.IdWorker;
+import com.mdharr.hogwartsartifactsonline.system.CursorPage;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
 import com.mdharr.hogwartsartifactsonline.wizard.Wizard;
+import com.mdharr.hogwartsartifactsonline.wizard.WizardRepository;
+import com.mdharr.hogwartsartifactsonline.wizard.WizardService;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +16,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,9 +34,27 @@ class ArtifactServiceTest {
     @Mock
     ArtifactRepository artifactRepository;
 
+    @Mock
+    WizardRepository wizardRepository;
+
+    @Mock
+    WizardService wizardService;
+
     @Mock
     IdWorker idWorker;
 
+    @Mock
+    EntityManager entityManager;
+
+    @Mock
+    ArtifactDtoCache artifactDtoCache;
+
+    @Mock
+    ArtifactSearchIndex artifactSearchIndex;
+
+    @Mock
+    ArtifactIdFilter artifactIdFilter;
+
     @InjectMocks
     ArtifactService artifactService;
 
@@ -77,6 +100,7 @@ class ArtifactServiceTest {
 
         a.setOwner(w);
 
+        given(artifactIdFilter.mightExist("1250808601744904192")).willReturn(true);
         given(artifactRepository.findById("1250808601744904192")).willReturn(Optional.of(a)); // Defines the behavior of the mock object
 
         // When. Act on the target behavior. When steps should cover the method to be tested.
@@ -94,6 +118,7 @@ class ArtifactServiceTest {
     @Test
     void testFindByIdNotFound() {
         // Given.
+        given(artifactIdFilter.mightExist("1250808601744904192")).willReturn(true);
         given(artifactRepository.findById(Mockito.any(String.class))).willReturn(Optional.empty());
 
         // When.
@@ -107,6 +132,23 @@ class ArtifactServiceTest {
                 .hasMessage("Could not find artifact with Id 1250808601744904192 :(");
 
         verify(artifactRepository, times(1)).findById("1250808601744904192");
+        verify(artifactIdFilter, times(1)).recordMiss("1250808601744904192");
+    }
+
+    @Test
+    void testFindByIdNotFoundWithoutQueryAfterConfirmedMiss() {
+        // Given
+        given(artifactIdFilter.mightExist("1250808601744904999")).willReturn(false);
+
+        // When
+        Throwable thrown = catchThrowable(() -> artifactService.findById("1250808601744904999"));
+
+        // Then
+        assertThat(thrown)
+                .isInstanceOf(ObjectNotFoundException.class)
+                .hasMessage("Could not find artifact with Id 1250808601744904999 :(");
+
+        verify(artifactRepository, never()).findById(Mockito.any());
     }
 
     @Test
@@ -122,6 +164,77 @@ class ArtifactServiceTest {
         verify(artifactRepository, times(1)).findAll();
     }
 
+    @Test
+    void testFindPageFirstPageHasNextCursor() {
+        // Given. The repository returns one row more than the page size, so there is a next page.
+        given(artifactRepository.findAllByOrderByIdAsc(Limit.of(2))).willReturn(this.artifacts);
+
+        // When
+        CursorPage<Artifact> page = artifactService.findPage(null, 1);
+
+        // Then
+        assertThat(page.content()).hasSize(1);
+        assertThat(page.content().get(0).getId()).isEqualTo("1250808601744904191");
+        assertThat(page.nextCursor()).isEqualTo("1250808601744904191");
+        verify(artifactRepository, times(1)).findAllByOrderByIdAsc(Limit.of(2));
+    }
+
+    @Test
+    void testFindPageLastPageHasNoNextCursor() {
+        // Given
+        given(artifactRepository.findByIdGreaterThanOrderByIdAsc("1250808601744904191", Limit.of(3))).willReturn(this.artifacts.subList(1, 2));
+
+        // When
+        CursorPage<Artifact> page = artifactService.findPage("1250808601744904191", 2);
+
+        // Then
+        assertThat(page.content()).hasSize(1);
+        assertThat(page.content().get(0).getId()).isEqualTo("1250808601744904192");
+        assertThat(page.nextCursor()).isNull();
+        verify(artifactRepository, times(1)).findByIdGreaterThanOrderByIdAsc("1250808601744904191", Limit.of(3));
+    }
+
+    @Test
+    void testSearchKeepsIndexRanking() {
+        // Given
+        given(artifactSearchIndex.search("invisibility", 20)).willReturn(List.of("1250808601744904192", "1250808601744904191"));
+        given(artifactRepository.findByIdIn(List.of("1250808601744904192", "1250808601744904191"))).willReturn(this.artifacts);
+
+        // When
+        List<Artifact> foundArtifacts = artifactService.search("invisibility", 20);
+
+        // Then
+        assertThat(foundArtifacts).extracting(Artifact::getId).containsExactly("1250808601744904192", "1250808601744904191");
+    }
+
+    @Test
+    void testSearchWithNoHitsSkipsTheDatabase() {
+        // Given
+        given(artifactSearchIndex.search("basilisk", 20)).willReturn(List.of());
+
+        // When
+        List<Artifact> foundArtifacts = artifactService.search("basilisk", 20);
+
+        // Then
+        assertThat(foundArtifacts).isEmpty();
+        verify(artifactRepository, never()).findByIdIn(Mockito.any());
+    }
+
+    @Test
+    void testExportAllSuccess() {
+        // Given
+        given(artifactRepository.streamAllByOrderByIdAsc()).willReturn(this.artifacts.stream());
+        List<Artifact> exportedArtifacts = new ArrayList<>();
+
+        // When
+        artifactService.exportAll(exportedArtifacts::add);
+
+        // Then
+        assertThat(exportedArtifacts).containsExactlyElementsOf(this.artifacts);
+        verify(artifactRepository, times(1)).streamAllByOrderByIdAsc();
+        verify(wizardService, times(1)).loadNumberOfArtifacts(Mockito.anyList());
+    }
+
     @Test
     void testSaveSuccess() {
         // Given
@@ -143,6 +256,32 @@ class ArtifactServiceTest {
         assertThat(savedArtifact.getImageUrl()).isEqualTo(newArtifact.getImageUrl());
 
         verify(artifactRepository, times(1)).save(newArtifact);
+        verify(artifactSearchIndex, times(1)).index(newArtifact);
+        verify(artifactIdFilter, times(1)).add("123456");
+    }
+
+    @Test
+    void testSaveAllReservesIdBlockAndPersists() {
+        // Given
+        Artifact a3 = new Artifact();
+        a3.setName("Artifact 3");
+        Artifact a4 = new Artifact();
+        a4.setName("Artifact 4");
+
+        given(idWorker.nextIds(2)).willReturn(new long[]{123456L, 123457L});
+
+        // When
+        List<Artifact> savedArtifacts = artifactService.saveAll(List.of(a3, a4));
+
+        // Then
+        assertThat(savedArtifacts).extracting(Artifact::getId).containsExactly("123456", "123457");
+        verify(idWorker, never()).nextId();
+        verify(entityManager, times(1)).persist(a3);
+        verify(entityManager, times(1)).persist(a4);
+        verify(entityManager, times(1)).flush();
+        verify(artifactRepository, never()).save(Mockito.any(Artifact.class));
+        verify(artifactSearchIndex, times(1)).index(List.of(a3, a4));
+        verify(artifactIdFilter, times(1)).add(List.of("123456", "123457"));
     }
 
     @Test
@@ -172,7 +311,8 @@ class ArtifactServiceTest {
 
         verify(artifactRepository, times(1)).findById("1250808601744904192");
         verify(artifactRepository, times(1)).save(oldArtifact);
-
+        verify(artifactDtoCache, times(1)).evict("1250808601744904192");
+        verify(artifactSearchIndex, times(1)).index(oldArtifact);
     }
 
     @Test
@@ -212,6 +352,32 @@ class ArtifactServiceTest {
 
         // Then
         verify(artifactRepository, times(1)).deleteById("1250808601744904192");
+        verify(artifactDtoCache, times(1)).evict(List.of("1250808601744904192"));
+        verify(artifactSearchIndex, times(1)).remove("1250808601744904192");
+    }
+
+    @Test
+    void testDeleteOwnedArtifactEvictsOwnersArtifacts() {
+        // Given
+        Artifact artifact = new Artifact();
+        artifact.setId("1250808601744904192");
+        artifact.setName("Invisibility Cloak");
+
+        Wizard w = new Wizard();
+        w.setId(2);
+        w.setName("Harry Potter");
+        w.addArtifact(artifact);
+
+        given(artifactRepository.findById("1250808601744904192")).willReturn(Optional.of(artifact));
+        given(artifactRepository.findIdsByOwnerId(2)).willReturn(List.of("1250808601744904192", "1250808601744904194"));
+
+        // When
+        artifactService.delete("1250808601744904192");
+
+        // Then
+        verify(artifactRepository, times(1)).deleteById("1250808601744904192");
+        verify(artifactDtoCache, times(1)).evict(List.of("1250808601744904192", "1250808601744904194"));
+        verify(wizardRepository, times(1)).touch(eq(List.of(2)), Mockito.any());
     }
 
     @Test
@@ -0,0 +1,81 @@
+package com.mdharr.hogwartsartifactsonline.artifact.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares id throughput of the lock-free IdWorker with the original synchronized one at 1, 8 and 32 threads.
+ * Both are capped at 4096 ids per millisecond by the sequence width, so once they hit that ceiling compare latency
+ * and CPU time (e.g. -bm sample -prof stack) rather than throughput alone.
+ * Run with: ./mvnw -P benchmark test-compile exec:exec -Dbenchmark=IdWorkerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdWorkerBenchmark {
+
+    IdWorker idWorker;
+
+    SynchronizedIdWorker synchronizedIdWorker;
+
+    @Setup
+    public void setUp() {
+        this.idWorker = new IdWorker(1, 1);
+        this.synchronizedIdWorker = new SynchronizedIdWorker(1, 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long lockFree1Thread() {
+        return this.idWorker.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long lockFree8Threads() {
+        return this.idWorker.nextId();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long lockFree32Threads() {
+        return this.idWorker.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long synchronized1Thread() {
+        return this.synchronizedIdWorker.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long synchronized8Threads() {
+        return this.synchronizedIdWorker.nextId();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long synchronized32Threads() {
+        return this.synchronizedIdWorker.nextId();
+    }
+
+    // Blocks of 64 ids per call, to show what a bulk insert saves over 64 single calls.
+    @Benchmark
+    @Threads(8)
+    @OperationsPerInvocation(64)
+    public long[] lockFreeBlockOf64With8Threads() {
+        return this.idWorker.nextIds(64);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IdWorkerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
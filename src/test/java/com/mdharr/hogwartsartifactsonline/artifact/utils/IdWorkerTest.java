@@ -0,0 +1,108 @@
+package com.mdharr.hogwartsartifactsonline.artifact.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdWorkerTest {
+
+    @Test
+    void testNextIdIsIncreasing() {
+        // Given
+        IdWorker idWorker = new IdWorker(1, 1);
+
+        // When
+        long first = idWorker.nextId();
+        long second = idWorker.nextId();
+
+        // Then
+        assertThat(second).isGreaterThan(first);
+    }
+
+    @Test
+    void testNextIdsReservesContiguousBlock() {
+        // Given
+        IdWorker idWorker = new IdWorker(1, 1);
+
+        // When
+        long[] ids = idWorker.nextIds(IdWorker.maxBlockSize);
+        long next = idWorker.nextId();
+
+        // Then
+        assertThat(ids).hasSize(IdWorker.maxBlockSize);
+        for (int i = 1; i < ids.length; i++) {
+            assertThat(ids[i]).isEqualTo(ids[0] + i);
+        }
+        assertThat(next).isGreaterThan(ids[ids.length - 1]);
+    }
+
+    @Test
+    void testTimestampOfDecodesTheMintingMillisecond() {
+        // Given
+        IdWorker idWorker = new IdWorker(31, 31);
+
+        // When
+        long before = System.currentTimeMillis();
+        long id = idWorker.nextId();
+        long after = System.currentTimeMillis();
+
+        // Then
+        assertThat(IdWorker.timestampOf(id)).isBetween(before, after);
+    }
+
+    @Test
+    void testNextIdsWithInvalidBlockSize() {
+        IdWorker idWorker = new IdWorker(1, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> idWorker.nextIds(0));
+        assertThrows(IllegalArgumentException.class, () -> idWorker.nextIds(IdWorker.maxBlockSize + 1));
+    }
+
+    @Test
+    void testConstructorWithInvalidWorkerId() {
+        assertThrows(IllegalArgumentException.class, () -> new IdWorker(32, 1));
+        assertThrows(IllegalArgumentException.class, () -> new IdWorker(1, -1));
+    }
+
+    @Test
+    void testConcurrentCallersNeverGetTheSameId() throws Exception {
+        // Given
+        IdWorker idWorker = new IdWorker(1, 1);
+        int threads = 8;
+        int idsPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                long[] ids = new long[idsPerThread];
+                for (int i = 0; i < idsPerThread; i += 100) {
+                    // Mix single ids with blocks.
+                    ids[i] = idWorker.nextId();
+                    System.arraycopy(idWorker.nextIds(99), 0, ids, i + 1, 99);
+                }
+                return ids;
+            }));
+        }
+        start.countDown();
+        Set<Long> allIds = ConcurrentHashMap.newKeySet();
+        for (Future<long[]> future : futures) {
+            for (long id : future.get(30, TimeUnit.SECONDS)) {
+                allIds.add(id);
+            }
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(allIds).hasSize(threads * idsPerThread);
+    }
+}
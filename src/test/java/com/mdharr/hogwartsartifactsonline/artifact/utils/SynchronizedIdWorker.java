@@ -0,0 +1,80 @@
+package com.mdharr.hogwartsartifactsonline.artifact.utils;
+
+/**
+ * The original monitor-based IdWorker, kept only as the baseline for IdWorkerBenchmark.
+ */
+class SynchronizedIdWorker {
+
+    private final static long twepoch = 1288834974657L;
+
+    private final static long workerIdBits = 5L;
+
+    private final static long datacenterIdBits = 5L;
+
+    private final static long maxWorkerId = -1L ^ (-1L << workerIdBits);
+
+    private final static long maxDatacenterId = -1L ^ (-1L << datacenterIdBits);
+
+    private final static long sequenceBits = 12L;
+
+    private final static long workerIdShift = sequenceBits;
+
+    private final static long datacenterIdShift = sequenceBits + workerIdBits;
+
+    private final static long timestampLeftShift = sequenceBits + workerIdBits + datacenterIdBits;
+
+    private final static long sequenceMask = -1L ^ (-1L << sequenceBits);
+
+    private static long lastTimestamp = -1L;
+
+    private long sequence = 0L;
+
+    private final long workerId;
+
+    private final long datacenterId;
+
+
+    SynchronizedIdWorker(long workerId, long datacenterId) {
+        if (workerId > maxWorkerId || workerId < 0) {
+            throw new IllegalArgumentException(String.format("worker Id can't be greater than %d or less than 0", maxWorkerId));
+        }
+        if (datacenterId > maxDatacenterId || datacenterId < 0) {
+            throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", maxDatacenterId));
+        }
+        this.workerId = workerId;
+        this.datacenterId = datacenterId;
+    }
+
+    public synchronized long nextId() {
+        long timestamp = timeGen();
+        if (timestamp < lastTimestamp) {
+            throw new RuntimeException(String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
+        }
+        if (lastTimestamp == timestamp) {
+            sequence = (sequence + 1) & sequenceMask;
+            if (sequence == 0) {
+                timestamp = tilNextMillis(lastTimestamp);
+            }
+        } else {
+            sequence = 0L;
+        }
+        lastTimestamp = timestamp;
+        long nextId = ((timestamp - twepoch) << timestampLeftShift)
+                | (datacenterId << datacenterIdShift)
+                | (workerId << workerIdShift) | sequence;
+        return nextId;
+    }
+
+    private long tilNextMillis(final long lastTimestamp) {
+        long timestamp = this.timeGen();
+        while (timestamp <= lastTimestamp) {
+            timestamp = this.timeGen();
+        }
+        return timestamp;
+    }
+
+    private long timeGen() {
+        return System.currentTimeMillis();
+    }
+
+}
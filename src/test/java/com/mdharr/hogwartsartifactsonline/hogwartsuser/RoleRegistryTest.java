@@ -0,0 +1,52 @@
+package com.mdharr.hogwartsartifactsonline.hogwartsuser;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RoleRegistryTest {
+
+    @Test
+    void testFromRolesAddsPrefixAndSharesTheList() {
+        // When
+        List<GrantedAuthority> first = RoleRegistry.fromRoles("admin user");
+        List<GrantedAuthority> second = RoleRegistry.fromRoles("admin user");
+
+        // Then
+        assertThat(first).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_admin", "ROLE_user");
+        assertThat(second).isSameAs(first);
+        assertThrows(UnsupportedOperationException.class, () -> first.add(first.get(0)));
+    }
+
+    @Test
+    void testAuthoritiesAreInternedAcrossRoleStringsAndTokens() {
+        // When
+        List<GrantedAuthority> adminUser = RoleRegistry.fromRoles("admin user");
+        List<GrantedAuthority> user = RoleRegistry.fromRoles("user");
+        List<GrantedAuthority> fromToken = RoleRegistry.fromAuthorities("ROLE_admin ROLE_user");
+
+        // Then
+        assertThat(user.get(0)).isSameAs(adminUser.get(1));
+        assertThat(fromToken.get(0)).isSameAs(adminUser.get(0));
+        assertThat(fromToken.get(1)).isSameAs(adminUser.get(1));
+    }
+
+    @Test
+    void testMyUserPrincipalReturnsSharedAuthorities() {
+        // Given
+        HogwartsUser john = new HogwartsUser();
+        john.setUsername("john");
+        john.setRoles("admin user");
+        HogwartsUser eric = new HogwartsUser();
+        eric.setUsername("eric");
+        eric.setRoles("admin user");
+
+        // When and then
+        assertThat(new MyUserPrincipal(john).getAuthorities()).isSameAs(new MyUserPrincipal(eric).getAuthorities());
+        assertThat(RoleRegistry.fromRoles(null)).isEmpty();
+    }
+}
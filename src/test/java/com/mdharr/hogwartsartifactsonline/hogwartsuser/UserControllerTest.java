@@ -2,6 +2,7 @@ package com.mdharr.hogwartsartifactsonline.hogwartsuser;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mdharr.hogwartsartifactsonline.hogwartsuser.dto.UserDto;
+import com.mdharr.hogwartsartifactsonline.security.PasswordHashingRejectedException;
 import com.mdharr.hogwartsartifactsonline.system.StatusCode;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
 import org.hamcrest.Matchers;
@@ -25,6 +26,7 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc(addFilters = false)
@@ -130,6 +132,27 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.data.roles").value("admin user"));
     }
 
+    @Test
+    void testAddUserWhenPasswordHashingIsSaturated() throws Exception {
+        HogwartsUser user = new HogwartsUser();
+        user.setUsername("lily");
+        user.setPassword("123456");
+        user.setEnabled(true);
+        user.setRoles("admin user");
+
+        String json = this.objectMapper.writeValueAsString(user);
+
+        // given
+        given(this.userService.save(Mockito.any(HogwartsUser.class))).willThrow(new PasswordHashingRejectedException("Too many password hashing requests, please retry later."));
+
+        // when and then
+        this.mockMvc.perform(post(this.baseUrl + "/users").contentType(MediaType.APPLICATION_JSON).content(json).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.flag").value(false))
+                .andExpect(jsonPath("$.code").value(StatusCode.SERVICE_UNAVAILABLE))
+                .andExpect(jsonPath("$.message").value("The server is busy, please retry later."));
+    }
+
     @Test
     void testUpdateUserSuccess() throws Exception {
         // given
@@ -1,5 +1,6 @@
 package com.mdharr.hogwartsartifactsonline.hogwartsuser;
 
+import com.mdharr.hogwartsartifactsonline.security.VerifiedCredentialCache;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -30,6 +31,9 @@ class UserServiceTest {
     @Mock
     PasswordEncoder passwordEncoder;
 
+    @Mock
+    VerifiedCredentialCache verifiedCredentialCache;
+
     @InjectMocks
     UserService userService;
 
@@ -179,6 +183,7 @@ class UserServiceTest {
 
         verify(this.userRepository, times(1)).findById(1);
         verify(this.userRepository, times(1)).save(oldUser);
+        verify(this.verifiedCredentialCache, times(2)).evict("lily");
     }
 
     @Test
@@ -199,6 +204,7 @@ class UserServiceTest {
 
         // then
         verify(this.userRepository, times(1)).deleteById(1);
+        verify(this.verifiedCredentialCache, times(1)).evict("john");
     }
 
     @Test
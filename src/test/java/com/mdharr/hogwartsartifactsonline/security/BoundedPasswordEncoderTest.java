@@ -0,0 +1,87 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BoundedPasswordEncoderTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    CountDownLatch hashStarted;
+
+    CountDownLatch releaseHashes;
+
+    BoundedPasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.hashStarted = new CountDownLatch(1);
+        this.releaseHashes = new CountDownLatch(1);
+        // A fake BCrypt that blocks until the test lets it go.
+        PasswordEncoder slowEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                hashStarted.countDown();
+                try {
+                    releaseHashes.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "{hashed}" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encode(rawPassword).equals(encodedPassword);
+            }
+        };
+        this.passwordEncoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, this.meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.releaseHashes.countDown();
+        this.passwordEncoder.shutdown();
+    }
+
+    @Test
+    void testEncodeAndMatchesRunOnThePool() {
+        this.releaseHashes.countDown();
+
+        assertThat(this.passwordEncoder.encode("123456")).isEqualTo("{hashed}123456");
+        assertThat(this.passwordEncoder.matches("123456", "{hashed}123456")).isTrue();
+        assertThat(this.passwordEncoder.matches("654321", "{hashed}123456")).isFalse();
+        assertThat(this.meterRegistry.get("password.hashing").tag("operation", "encode").timer().count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("password.hashing").tag("operation", "matches").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testRejectsWhenPoolAndQueueAreFull() throws Exception {
+        // Given. One hash is running and one is queued.
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> this.passwordEncoder.encode("a"));
+        assertThat(this.hashStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> this.passwordEncoder.encode("b"));
+        while (this.meterRegistry.get("password.hashing.queue.size").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        // When and then
+        assertThrows(PasswordHashingRejectedException.class, () -> this.passwordEncoder.encode("c"));
+        assertThat(this.meterRegistry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+
+        this.releaseHashes.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("{hashed}a");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("{hashed}b");
+    }
+}
@@ -0,0 +1,144 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import com.mdharr.hogwartsartifactsonline.hogwartsuser.HogwartsUser;
+import com.mdharr.hogwartsartifactsonline.hogwartsuser.MyUserPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingDaoAuthenticationProviderTest {
+
+    @Mock
+    UserDetailsService userDetailsService;
+
+    @Mock
+    PasswordEncoder passwordEncoder;
+
+    VerifiedCredentialCache verifiedCredentialCache;
+
+    CachingDaoAuthenticationProvider authenticationProvider;
+
+    MyUserPrincipal john;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.verifiedCredentialCache = new VerifiedCredentialCache(100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        this.authenticationProvider = new CachingDaoAuthenticationProvider(this.passwordEncoder, this.verifiedCredentialCache);
+        this.authenticationProvider.setUserDetailsService(this.userDetailsService);
+
+        HogwartsUser u = new HogwartsUser();
+        u.setId(1);
+        u.setUsername("john");
+        u.setPassword("Encoded Password");
+        u.setEnabled(true);
+        u.setRoles("admin user");
+        this.john = new MyUserPrincipal(u);
+    }
+
+    @Test
+    void testRepeatedLoginSkipsPasswordCheck() {
+        // Given
+        given(this.userDetailsService.loadUserByUsername("john")).willReturn(this.john);
+        given(this.passwordEncoder.matches("123456", "Encoded Password")).willReturn(true);
+
+        // When
+        Authentication first = this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+        Authentication second = this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+
+        // Then
+        assertThat(first.isAuthenticated()).isTrue();
+        assertThat(second.isAuthenticated()).isTrue();
+        assertThat(second.getPrincipal()).isSameAs(this.john);
+        assertThat(second.getAuthorities()).extracting("authority").containsExactly("ROLE_admin", "ROLE_user");
+        verify(this.userDetailsService, times(1)).loadUserByUsername("john");
+        verify(this.passwordEncoder, times(1)).matches("123456", "Encoded Password");
+    }
+
+    @Test
+    void testWrongPasswordIsCheckedAgainstBCrypt() {
+        // Given. john logged in successfully once.
+        given(this.userDetailsService.loadUserByUsername("john")).willReturn(this.john);
+        given(this.passwordEncoder.matches("123456", "Encoded Password")).willReturn(true);
+        given(this.passwordEncoder.matches("wrong", "Encoded Password")).willReturn(false);
+        this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+
+        // When and then
+        assertThrows(BadCredentialsException.class, () ->
+                this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "wrong")));
+        verify(this.passwordEncoder, times(1)).matches("wrong", "Encoded Password");
+    }
+
+    @Test
+    void testEvictForcesPasswordCheck() {
+        // Given
+        given(this.userDetailsService.loadUserByUsername("john")).willReturn(this.john);
+        given(this.passwordEncoder.matches("123456", "Encoded Password")).willReturn(true);
+        this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+
+        // When
+        this.verifiedCredentialCache.evict("john");
+        this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+
+        // Then
+        verify(this.passwordEncoder, times(2)).matches("123456", "Encoded Password");
+    }
+
+    @Test
+    void testEvictInTransactionEvictsAgainAfterCompletion() {
+        // Given
+        given(this.userDetailsService.loadUserByUsername("john")).willReturn(this.john);
+        given(this.passwordEncoder.matches("123456", "Encoded Password")).willReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.verifiedCredentialCache.evict("john");
+            // A login before the commit still reads and caches the old user.
+            this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+
+            // When
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+
+        // Then
+        verify(this.passwordEncoder, times(2)).matches("123456", "Encoded Password");
+    }
+
+    @Test
+    void testLoginRacingAnEvictionDoesNotCacheTheOldUser() {
+        // Given. john is disabled and evicted while the first login is still checking his old state.
+        given(this.userDetailsService.loadUserByUsername("john")).willAnswer(invocation -> {
+            this.verifiedCredentialCache.evict("john");
+            return this.john;
+        }).willReturn(this.john);
+        given(this.passwordEncoder.matches("123456", "Encoded Password")).willReturn(true);
+
+        // When
+        this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+        this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+        this.authenticationProvider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("john", "123456"));
+
+        // Then. Only the second login was cached.
+        verify(this.passwordEncoder, times(2)).matches("123456", "Encoded Password");
+    }
+}
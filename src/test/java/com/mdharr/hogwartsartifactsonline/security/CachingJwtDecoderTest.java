@@ -0,0 +1,96 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingJwtDecoderTest {
+
+    @Mock
+    JwtDecoder delegate;
+
+    SimpleMeterRegistry meterRegistry;
+
+    int authoritiesConversions;
+
+    CachingJwtDecoder cachingJwtDecoder;
+
+    Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.authoritiesConversions = 0;
+        this.cachingJwtDecoder = new CachingJwtDecoder(this.delegate, jwt -> {
+            this.authoritiesConversions++;
+            return List.of(new SimpleGrantedAuthority("ROLE_admin"), new SimpleGrantedAuthority("ROLE_user"));
+        }, 100, this.meterRegistry, Clock.fixed(this.now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void testSameTokenIsVerifiedOnce() {
+        // Given
+        Jwt jwt = jwt("token-1", this.now.plusSeconds(3600));
+        given(this.delegate.decode("token-1")).willReturn(jwt);
+
+        // When
+        Jwt first = this.cachingJwtDecoder.decode("token-1");
+        Jwt second = this.cachingJwtDecoder.decode("token-1");
+        Collection<GrantedAuthority> authorities = this.cachingJwtDecoder.authoritiesConverter().convert(second);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(authorities).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_admin", "ROLE_user");
+        assertThat(this.authoritiesConversions).isEqualTo(1);
+        verify(this.delegate, times(1)).decode("token-1");
+        assertThat(this.meterRegistry.get("cache.hit.ratio").tag("cache", "decodedJwts").gauge().value()).isEqualTo(0.5);
+        assertThat(this.meterRegistry.get("jwt.verification").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testExpiredAndInvalidTokensAreNotCached() {
+        // Given
+        given(this.delegate.decode("expired")).willReturn(jwt("expired", this.now.minusSeconds(1)));
+        given(this.delegate.decode("forged")).willThrow(new BadJwtException("Signed JWT rejected: Invalid signature"));
+
+        // When
+        this.cachingJwtDecoder.decode("expired");
+        this.cachingJwtDecoder.decode("expired");
+        assertThrows(BadJwtException.class, () -> this.cachingJwtDecoder.decode("forged"));
+        assertThrows(BadJwtException.class, () -> this.cachingJwtDecoder.decode("forged"));
+
+        // Then
+        verify(this.delegate, times(2)).decode("expired");
+        verify(this.delegate, times(2)).decode("forged");
+    }
+
+    private static Jwt jwt(String tokenValue, Instant expiresAt) {
+        return Jwt.withTokenValue(tokenValue)
+                .header("alg", "RS256")
+                .subject("john")
+                .issuedAt(expiresAt.minusSeconds(7200))
+                .expiresAt(expiresAt)
+                .claim("authorities", "ROLE_admin ROLE_user")
+                .build();
+    }
+}
@@ -0,0 +1,223 @@
+package com.mdharr.hogwartsartifactsonline.security;
+
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtKeyManagerTest {
+
+    @TempDir
+    Path keyDirectory;
+
+    MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+
+    @Test
+    void testReplicasShareKeysFromDirectory() throws Exception {
+        // Given
+        JwtKeyManager node1 = directoryKeyManager();
+        node1.refresh();
+        JwtKeyManager node2 = directoryKeyManager();
+        node2.refresh();
+
+        // When
+        String token = createToken(node1);
+        Jwt jwt = decoder(node2).decode(token);
+
+        // Then
+        assertThat(pemFiles()).hasSize(1);
+        assertThat(jwt.getSubject()).isEqualTo("john");
+        assertThat(jwt.getHeaders().get("kid")).isEqualTo(node1.getJwkSet().getKeys().get(0).getKeyID());
+        assertThat(pemFiles().get(0).getFileName().toString()).isEqualTo(jwt.getHeaders().get("kid") + ".pem");
+    }
+
+    @ParameterizedTest
+    @EnumSource(JwtSigningAlgorithm.class)
+    void testSignsAndVerifiesWithEachAlgorithm(JwtSigningAlgorithm algorithm) throws Exception {
+        // Given. The second manager reads the PEM file the first one wrote.
+        directoryKeyManager(algorithm).refresh();
+        JwtKeyManager jwtKeyManager = directoryKeyManager(algorithm);
+        jwtKeyManager.refresh();
+
+        // When
+        String token = createToken(jwtKeyManager);
+        Jwt jwt = decoder(jwtKeyManager).decode(token);
+
+        // Then
+        assertThat(pemFiles()).hasSize(1);
+        assertThat(jwt.getHeaders().get("alg")).isEqualTo(algorithm.getJwsAlgorithm().getName());
+        assertThat(jwt.getSubject()).isEqualTo("john");
+        assertThat(jwtKeyManager.getJwkSet().getKeys().get(0).isPrivate()).isFalse();
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA" + token.substring(token.lastIndexOf('.') + 5);
+        assertThrows(JwtException.class, () -> decoder(jwtKeyManager).decode(tampered));
+    }
+
+    @Test
+    void testSwitchingAlgorithmKeepsOldTokensValid() throws Exception {
+        // Given
+        JwtKeyManager rsaKeyManager = directoryKeyManager(JwtSigningAlgorithm.RS256);
+        rsaKeyManager.refresh();
+        String rsaToken = createToken(rsaKeyManager);
+
+        // When. The node restarts with Ed25519 configured.
+        this.clock.advance(Duration.ofMinutes(1));
+        JwtKeyManager ed25519KeyManager = directoryKeyManager(JwtSigningAlgorithm.ED25519);
+        ed25519KeyManager.refresh();
+
+        // Then
+        assertThat(decoder(ed25519KeyManager).decode(createToken(ed25519KeyManager)).getHeaders().get("alg")).isEqualTo("EdDSA");
+        assertThat(decoder(ed25519KeyManager).decode(rsaToken).getSubject()).isEqualTo("john");
+        assertThat(ed25519KeyManager.getJwkSet().getKeys()).hasSize(2);
+    }
+
+    @Test
+    void testRotationKeepsPreviousKeyForGracePeriod() throws Exception {
+        // Given
+        JwtKeyManager jwtKeyManager = directoryKeyManager();
+        jwtKeyManager.refresh();
+        String oldToken = createToken(jwtKeyManager);
+        String oldKid = jwtKeyManager.getJwkSet().getKeys().get(0).getKeyID();
+
+        // When. The rotation interval has passed.
+        this.clock.advance(Duration.ofDays(7));
+        jwtKeyManager.refresh();
+
+        // Then. A new key signs, and the old one still verifies.
+        assertThat(jwtKeyManager.getJwkSet().getKeys()).hasSize(2);
+        assertThat(decoder(jwtKeyManager).decode(createToken(jwtKeyManager)).getHeaders().get("kid")).isNotEqualTo(oldKid);
+        assertThat(decoder(jwtKeyManager).decode(oldToken).getSubject()).isEqualTo("john");
+
+        // When. The grace period has passed too.
+        this.clock.advance(Duration.ofHours(2).plusSeconds(1));
+        jwtKeyManager.refresh();
+
+        // Then
+        assertThat(jwtKeyManager.getJwkSet().getKeys()).hasSize(1);
+        assertThat(pemFiles()).hasSize(1);
+        assertThrows(JwtException.class, () -> decoder(jwtKeyManager).decode(oldToken));
+    }
+
+    @Test
+    void testDecoderReloadsWhenAnotherReplicaRotated() throws Exception {
+        // Given
+        JwtKeyManager node1 = directoryKeyManager();
+        node1.refresh();
+        JwtKeyManager node2 = directoryKeyManager();
+        node2.refresh();
+
+        // When. Node 1 rotates before node 2's next scheduled refresh.
+        this.clock.advance(Duration.ofDays(7));
+        node1.refresh();
+        String token = createToken(node1);
+
+        // Then
+        assertThat(decoder(node2).decode(token).getSubject()).isEqualTo("john");
+        assertThat(node2.getJwkSet().getKeys()).hasSize(2);
+    }
+
+    @Test
+    void testLoadsKeysFromKeystore() throws Exception {
+        // Given
+        Path keystore = this.keyDirectory.resolve("jwt.p12");
+        Process keytool = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "hogwarts-1", "-keyalg", "RSA", "-keysize", "2048", "-dname", "CN=hogwarts",
+                "-storetype", "PKCS12", "-keystore", keystore.toString(), "-storepass", "changeit")
+                .inheritIO()
+                .start();
+        assertThat(keytool.waitFor()).isEqualTo(0);
+        JwtKeyManager jwtKeyManager = new JwtKeyManager(this.keyDirectory, keystore, "changeit", JwtSigningAlgorithm.RS256, Duration.ofDays(7), Duration.ofHours(2), this.clock);
+
+        // When
+        jwtKeyManager.refresh();
+        this.clock.advance(Duration.ofDays(30));
+        jwtKeyManager.refresh();
+
+        // Then. Keystores are never rotated by us.
+        Jwt jwt = decoder(jwtKeyManager).decode(createToken(jwtKeyManager));
+        assertThat(jwt.getHeaders().get("kid")).isEqualTo("hogwarts-1");
+        assertThat(pemFiles()).isEmpty();
+    }
+
+    private JwtKeyManager directoryKeyManager() {
+        return directoryKeyManager(JwtSigningAlgorithm.RS256);
+    }
+
+    private JwtKeyManager directoryKeyManager(JwtSigningAlgorithm algorithm) {
+        return new JwtKeyManager(this.keyDirectory, null, "", algorithm, Duration.ofDays(7), Duration.ofHours(2), this.clock);
+    }
+
+    // Same wiring as SecurityConfiguration.
+    private static String createToken(JwtKeyManager jwtKeyManager) {
+        Instant now = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer("self")
+                .issuedAt(now)
+                .expiresAt(now.plus(2, ChronoUnit.HOURS))
+                .subject("john")
+                .build();
+        return new SigningKeyJwtEncoder(jwtKeyManager).encode(JwtEncoderParameters.from(claims)).getTokenValue();
+    }
+
+    private static JwtDecoder decoder(JwtKeyManager jwtKeyManager) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(jwtKeyManager);
+        jwtProcessor.setJWSVerifierFactory(JwtSigningAlgorithm.verifierFactory());
+        return new NimbusJwtDecoder(jwtProcessor);
+    }
+
+    private List<Path> pemFiles() throws Exception {
+        try (Stream<Path> files = Files.list(this.keyDirectory)) {
+            return files.filter(file -> file.toString().endsWith(".pem")).toList();
+        }
+    }
+
+    static class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            this.now = this.now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.now;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExistingIdFilterTest {
+
+    MeterRegistry meterRegistry;
+
+    List<Integer> idsInDatabase;
+
+    ExistingIdFilter<Integer> filter;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.idsInDatabase = new ArrayList<>(List.of(1, 2, 5));
+        this.filter = filter(() -> List.copyOf(this.idsInDatabase).stream(), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void testEveryIdMightExistBeforeTheFirstRebuild() {
+        assertThat(this.filter.mightExist(3)).isTrue();
+        assertThat(this.meterRegistry.get("id.filter.lookups").tag("result", "passed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testRebuildRejectsMissingIdsItCovers() {
+        // When
+        this.filter.rebuild();
+
+        // Then
+        assertThat(this.filter.mightExist(1)).isTrue();
+        assertThat(this.filter.mightExist(5)).isTrue();
+        assertThat(this.filter.mightExist(3)).isFalse();
+        assertThat(this.meterRegistry.get("id.filter.lookups").tag("result", "rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testIdsAfterTheIndexedRangeMightExist() {
+        // Given
+        this.filter.rebuild();
+
+        // When. Like another node would, after the rebuild read the table.
+        this.idsInDatabase.add(6);
+
+        // Then
+        assertThat(this.filter.mightExist(6)).isTrue();
+        assertThat(this.filter.mightExist(1000)).isTrue();
+    }
+
+    @Test
+    void testIdsNoNodeHandsOutAreRejected() {
+        // Given
+        this.filter.rebuild();
+
+        // When and Then
+        assertThat(this.filter.mightExist(0)).isFalse();
+        assertThat(this.filter.mightExist(-7)).isFalse();
+    }
+
+    @Test
+    void testAddedIdIsIndexed() {
+        // Given
+        this.filter.rebuild();
+
+        // When
+        this.filter.add(3);
+        this.filter.add(List.of(4));
+
+        // Then
+        assertThat(this.filter.mightExist(3)).isTrue();
+        assertThat(this.filter.mightExist(4)).isTrue();
+    }
+
+    @Test
+    void testIdAddedDuringRebuildIsKept() {
+        // Given. An id is saved while the rebuild is still reading, after it read past where that id would be.
+        this.filter = filter(() -> Stream.of(1, 2, 5).peek(id -> {
+            if (id == 5) {
+                this.filter.add(3);
+            }
+        }), Duration.ofMinutes(1));
+
+        // When
+        this.filter.rebuild();
+
+        // Then
+        assertThat(this.filter.mightExist(3)).isTrue();
+        assertThat(this.filter.mightExist(4)).isFalse();
+    }
+
+    @Test
+    void testFailedRebuildKeepsThePreviousIndex() {
+        // Given
+        this.filter.rebuild();
+        this.idsInDatabase = null;
+
+        // When
+        assertThatThrownBy(() -> this.filter.rebuild()).isInstanceOf(NullPointerException.class);
+
+        // Then
+        assertThat(this.filter.mightExist(1)).isTrue();
+        assertThat(this.filter.mightExist(3)).isFalse();
+    }
+
+    @Test
+    void testConfirmedMissIsRejected() {
+        // When
+        this.filter.recordMiss(3);
+
+        // Then
+        assertThat(this.filter.mightExist(3)).isFalse();
+        assertThat(this.filter.mightExist(4)).isTrue();
+    }
+
+    @Test
+    void testAddedIdForgetsItsMiss() {
+        // Given
+        this.filter.recordMiss(6);
+        this.filter.recordMiss(7);
+
+        // When
+        this.filter.add(6);
+        this.filter.add(List.of(7));
+
+        // Then
+        assertThat(this.filter.mightExist(6)).isTrue();
+        assertThat(this.filter.mightExist(7)).isTrue();
+    }
+
+    @Test
+    void testMissesExpire() {
+        // Given
+        this.filter = filter(() -> List.copyOf(this.idsInDatabase).stream(), Duration.ZERO);
+
+        // When
+        this.filter.recordMiss(6);
+
+        // Then
+        assertThat(this.filter.mightExist(6)).isTrue();
+    }
+
+    // Positions ids like WizardIdFilter, without slack.
+    private ExistingIdFilter<Integer> filter(Supplier<Stream<Integer>> allIds, Duration missTimeToLive) {
+        return new ExistingIdFilter<>("wizard", allIds, 1000, 0.01, 1000, missTimeToLive, this.meterRegistry) {
+
+            @Override
+            protected long position(Integer id) {
+                return id >= 1 ? id : -1;
+            }
+
+            @Override
+            protected long indexedUpTo(long rebuildStartedAt, long highestPosition) {
+                return highestPosition;
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OptimisticLockRetrierTest {
+
+    MeterRegistry meterRegistry;
+
+    OptimisticLockRetrier optimisticLockRetrier;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.optimisticLockRetrier = new OptimisticLockRetrier(3, Duration.ofMillis(1), this.meterRegistry);
+    }
+
+    @Test
+    void testCallRetriesUntilSuccess() {
+        // Given
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        String result = this.optimisticLockRetrier.call(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Artifact", "1250808601744904191");
+            }
+            return "assigned";
+        });
+
+        // Then
+        assertThat(result).isEqualTo("assigned");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(this.meterRegistry.get("optimistic.lock.retries").tag("outcome", "retried").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testCallGivesUpAfterMaxAttempts() {
+        // Given
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> this.optimisticLockRetrier.run(() -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Artifact", "1250808601744904191");
+        }));
+
+        // Then
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(this.meterRegistry.get("optimistic.lock.retries").tag("outcome", "exhausted").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testCallDoesNotRetryOtherExceptions() {
+        // Given
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> this.optimisticLockRetrier.run(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException();
+        }));
+
+        // Then
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+}
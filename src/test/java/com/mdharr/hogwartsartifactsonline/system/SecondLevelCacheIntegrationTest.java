@@ -0,0 +1,111 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import com.mdharr.hogwartsartifactsonline.artifact.Artifact;
+import com.mdharr.hogwartsartifactsonline.artifact.ArtifactService;
+import com.mdharr.hogwartsartifactsonline.hogwartsuser.UserRepository;
+import com.mdharr.hogwartsartifactsonline.wizard.WizardRepository;
+import com.mdharr.hogwartsartifactsonline.wizard.WizardService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DisplayName("Integration tests for the second-level cache")
+@Tag("integration")
+class SecondLevelCacheIntegrationTest {
+
+    @Autowired
+    ArtifactService artifactService;
+
+    @Autowired
+    WizardService wizardService;
+
+    @Autowired
+    WizardRepository wizardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    Statistics statistics;
+
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.transactionTemplate = new TransactionTemplate(this.transactionManager);
+    }
+
+    @Test
+    @DisplayName("Check a repeated findById is served from the cache")
+    void testFindByIdHitsTheCache() {
+        // Given
+        this.artifactService.findById("1250808601744904191");
+        this.statistics.clear();
+
+        // When
+        Artifact artifact = this.artifactService.findById("1250808601744904191");
+
+        // Then
+        assertThat(artifact.getName()).isEqualTo("Deluminator");
+        assertThat(this.statistics.getPrepareStatementCount()).isZero();
+        assertThat(this.statistics.getDomainDataRegionStatistics("artifact").getHitCount()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Check a bulk reassignment is not hidden by cached wizards and their artifacts")
+    void testBulkAssignmentEvictsCachedCollections() {
+        // Given: both wizards and their artifacts are cached.
+        List<String> before = artifactIdsOf(1);
+        artifactIdsOf(2);
+        assertThat(before).contains("1250808601744904191");
+
+        // When
+        this.wizardService.assignArtifacts(2, List.of("1250808601744904191"));
+
+        // Then
+        assertThat(artifactIdsOf(1)).doesNotContain("1250808601744904191");
+        assertThat(artifactIdsOf(2)).contains("1250808601744904191");
+        assertThat(this.artifactService.findById("1250808601744904191").getOwner().getId()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Check findByUsername results are cached until the users table changes")
+    void testFindByUsernameUsesTheQueryCache() {
+        // Given
+        this.userRepository.findByUsername("john");
+        this.statistics.clear();
+
+        // When
+        this.userRepository.findByUsername("john");
+
+        // Then
+        assertThat(this.statistics.getQueryCacheHitCount()).isEqualTo(1);
+        assertThat(this.statistics.getPrepareStatementCount()).isZero();
+    }
+
+    private List<String> artifactIdsOf(Integer wizardId) {
+        return this.transactionTemplate.execute(status -> this.wizardRepository.findById(wizardId).orElseThrow()
+                .getArtifacts().stream().map(Artifact::getId).toList());
+    }
+}
@@ -0,0 +1,104 @@
+package com.mdharr.hogwartsartifactsonline.system;
+
+import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    MeterRegistry meterRegistry;
+
+    SingleFlight<Integer, String> singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.singleFlight = new SingleFlight<>("wizard", this.meterRegistry);
+    }
+
+    @Test
+    void testConcurrentCallersShareOneLoad() throws Exception {
+        // Given
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        // When
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> this.singleFlight.load(1, id -> {
+            loads.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return "Albus Dumbledore";
+        })));
+        leaderStarted.await();
+        for (int i = 1; i < callers; i++) {
+            results.add(executor.submit(() -> this.singleFlight.load(1, id -> {
+                loads.incrementAndGet();
+                return "loaded again";
+            })));
+        }
+        // Wait until every other caller has joined the leader's load before letting it finish.
+        while (this.meterRegistry.get("single.flight.loads").tag("result", "coalesced").counter().count() < callers - 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        // Then
+        for (Future<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("Albus Dumbledore");
+        }
+        executor.shutdown();
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("single.flight.loads").tag("result", "leader").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testLoadsAfterTheFirstOneFinishesRunAgain() {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        this.singleFlight.load(1, id -> "v" + loads.incrementAndGet());
+        String second = this.singleFlight.load(1, id -> "v" + loads.incrementAndGet());
+
+        // Then
+        assertThat(second).isEqualTo("v2");
+        assertThat(this.meterRegistry.get("single.flight.loads").tag("result", "coalesced").counter().count()).isZero();
+    }
+
+    @Test
+    void testFailedLoadIsNotKept() {
+        // When
+        assertThrows(ObjectNotFoundException.class, () -> this.singleFlight.load(9, id -> {
+            throw new ObjectNotFoundException("wizard", id);
+        }));
+
+        // Then
+        assertThat(this.singleFlight.load(9, id -> "Neville Longbottom")).isEqualTo("Neville Longbottom");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.mdharr.hogwartsartifactsonline.system.metrics;
+
+import com.mdharr.hogwartsartifactsonline.system.StatusCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false) // Test contexts only get a simple registry unless asked for the Prometheus one.
+@DisplayName("Integration tests for metrics")
+@Tag("integration")
+class MetricsIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${api.endpoint.base-url}")
+    String baseUrl;
+
+    String token;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String content = this.mockMvc.perform(post(this.baseUrl + "/users/login").with(httpBasic("john", "123456")))
+                .andReturn().getResponse().getContentAsString();
+        this.token = "Bearer " + new JSONObject(content).getJSONObject("data").getString("token");
+    }
+
+    @Test
+    @DisplayName("Check lookups are timed at every layer with their outcome and StatusCode")
+    void testLookupsAreTimedAtEveryLayer() throws Exception {
+        // When
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904999").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.code").value(StatusCode.NOT_FOUND));
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904191").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS));
+
+        // Then
+        assertThat(this.meterRegistry.find("http.server.requests")
+                .tag("handler", "ArtifactController.findArtifactById")
+                .tag("code", String.valueOf(StatusCode.NOT_FOUND))
+                .tag("outcome", "CLIENT_ERROR")
+                .timer()).isNotNull();
+        assertThat(this.meterRegistry.find("service.invocations")
+                .tags("class", "ArtifactService", "method", "findById")
+                .tag("code", String.valueOf(StatusCode.NOT_FOUND))
+                .tags("outcome", "CLIENT_ERROR", "exception", "ObjectNotFoundException")
+                .timer()).isNotNull();
+        assertThat(this.meterRegistry.find("spring.data.repository.invocations")
+                .tags("repository", "ArtifactRepository", "method", "findById", "state", "SUCCESS")
+                .timer()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Check the Prometheus endpoint publishes histograms, pool, Hibernate and JVM metrics")
+    void testPrometheusScrape() throws Exception {
+        // Given
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS));
+
+        // When
+        String scrape = this.mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Then
+        assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("handler=\"ArtifactController.findAllArtifacts\"")
+                .contains("service_invocations_seconds_bucket{")
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("jdbc_statements_seconds_bucket{")
+                .contains("hikaricp_connections_active")
+                .contains("hibernate_statements_total")
+                .contains("jvm_memory_used_bytes");
+    }
+}
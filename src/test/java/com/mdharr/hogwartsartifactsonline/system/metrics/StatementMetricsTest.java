@@ -0,0 +1,89 @@
+package com.mdharr.hogwartsartifactsonline.system.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StatementMetricsTest {
+
+    MeterRegistry meterRegistry;
+
+    StatementMetrics statementMetrics;
+
+    TimedDataSource timedDataSource;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.statementMetrics = new StatementMetrics(this.meterRegistry, Duration.ofSeconds(1), 0, 3);
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:statement-metrics-test");
+        this.timedDataSource = new TimedDataSource(h2, this.statementMetrics);
+    }
+
+    @Test
+    void testNormalizeReplacesLiteralsAndCollapsesInLists() {
+        assertThat(StatementMetrics.normalize("select a.id from artifact a\n  where a.name = 'Elder ''Wand''' and a.version > 3 and a.id in (?, ?,?)"))
+                .isEqualTo("select a.id from artifact a where a.name = ? and a.version > ? and a.id in (?)");
+        // Digits inside identifiers, as in Hibernate's aliases, are kept.
+        assertThat(StatementMetrics.normalize("select a1_0.id from artifact a1_0")).isEqualTo("select a1_0.id from artifact a1_0");
+    }
+
+    @Test
+    void testOperationOf() {
+        assertThat(StatementMetrics.operationOf("select ? from dual")).isEqualTo("select");
+        assertThat(StatementMetrics.operationOf("UPDATE artifact set version=?")).isEqualTo("update");
+        assertThat(StatementMetrics.operationOf("create table t (id int)")).isEqualTo("other");
+    }
+
+    @Test
+    void testPreparedStatementsAreTimedByShape() throws SQLException {
+        // When
+        try (Connection connection = this.timedDataSource.getConnection()) {
+            for (int i = 0; i < 2; i++) {
+                try (PreparedStatement statement = connection.prepareStatement("select cast(? as int)")) {
+                    statement.setInt(1, i);
+                    statement.executeQuery().close();
+                }
+            }
+        }
+
+        // Then
+        assertThat(this.meterRegistry.get("jdbc.statements")
+                .tags("shape", String.format("%08x", "select cast(? as int)".hashCode()), "operation", "select", "outcome", "success")
+                .timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testFailedStatementsAreCountedAsErrors() throws SQLException {
+        // When
+        try (Connection connection = this.timedDataSource.getConnection(); Statement statement = connection.createStatement()) {
+            assertThrows(SQLException.class, () -> statement.execute("select * from no_such_table"));
+        }
+
+        // Then
+        assertThat(this.meterRegistry.get("jdbc.statements").tag("outcome", "error").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testShapesBeyondTheLimitCountAsOther() {
+        // When
+        for (int i = 0; i < 5; i++) {
+            this.statementMetrics.record("select " + i + " from t" + i, 1_000, false);
+        }
+
+        // Then
+        assertThat(this.meterRegistry.get("jdbc.statements").tag("shape", "other").timer().count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,193 @@
+package com.mdharr.hogwartsartifactsonline.system.nodeidentity;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NodeIdentityServiceTest {
+
+    @Mock
+    WorkerIdLeaseRepository workerIdLeaseRepository;
+
+    @Mock
+    Clock clock;
+
+    MeterRegistry meterRegistry;
+
+    NodeIdentityService nodeIdentityService;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.nodeIdentityService = new NodeIdentityService(this.workerIdLeaseRepository, this.meterRegistry, Duration.ofMinutes(2), this.clock);
+    }
+
+    @Test
+    void testAcquireTakesOverExpiredLease() {
+        // Given
+        WorkerIdLease expiredLease = new WorkerIdLease();
+        expiredLease.setWorkerId(37);
+        given(this.clock.millis()).willReturn(1_000_000L);
+        given(this.workerIdLeaseRepository.findByExpiresAtLessThanOrderByWorkerId(1_000_000L)).willReturn(List.of(expiredLease));
+        given(this.workerIdLeaseRepository.takeOverExpired(eq(37), anyString(), eq(1_000_000L), eq(1_120_000L))).willReturn(1);
+
+        // When
+        this.nodeIdentityService.acquire();
+
+        // Then
+        assertThat(this.nodeIdentityService.getDatacenterId()).isEqualTo(1);
+        assertThat(this.nodeIdentityService.getWorkerId()).isEqualTo(5);
+        assertThat(this.meterRegistry.get("idworker.worker.id").gauge().value()).isEqualTo(37);
+        verify(this.workerIdLeaseRepository, never()).insert(Mockito.any(), anyString(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void testAcquireWaitsPastPreviousHoldersLastTimestamp() {
+        // Given. The previous holder's clock ran ahead of ours and it minted ids up to 1_000_005.
+        WorkerIdLease expiredLease = new WorkerIdLease();
+        expiredLease.setWorkerId(37);
+        WorkerIdLease takenOverLease = new WorkerIdLease();
+        takenOverLease.setWorkerId(37);
+        takenOverLease.setLastTimestamp(1_000_005L);
+        given(this.clock.millis()).willReturn(1_000_000L, 1_000_000L, 1_000_006L);
+        given(this.workerIdLeaseRepository.findByExpiresAtLessThanOrderByWorkerId(1_000_000L)).willReturn(List.of(expiredLease));
+        given(this.workerIdLeaseRepository.takeOverExpired(eq(37), anyString(), eq(1_000_000L), eq(1_120_000L))).willReturn(1);
+        given(this.workerIdLeaseRepository.findById(37)).willReturn(Optional.of(takenOverLease));
+
+        // When
+        this.nodeIdentityService.acquire();
+
+        // Then
+        verify(this.clock, times(3)).millis();
+        assertDoesNotThrow(() -> this.nodeIdentityService.checkLease());
+    }
+
+    @Test
+    void testCheckLeaseFailsWhenClockFallsBehindPreviousHoldersLastTimestamp() {
+        // Given
+        WorkerIdLease expiredLease = new WorkerIdLease();
+        expiredLease.setWorkerId(37);
+        WorkerIdLease takenOverLease = new WorkerIdLease();
+        takenOverLease.setWorkerId(37);
+        takenOverLease.setLastTimestamp(999_000L);
+        given(this.clock.millis()).willReturn(1_000_000L);
+        given(this.workerIdLeaseRepository.findByExpiresAtLessThanOrderByWorkerId(1_000_000L)).willReturn(List.of(expiredLease));
+        given(this.workerIdLeaseRepository.takeOverExpired(eq(37), anyString(), eq(1_000_000L), eq(1_120_000L))).willReturn(1);
+        given(this.workerIdLeaseRepository.findById(37)).willReturn(Optional.of(takenOverLease));
+        this.nodeIdentityService.acquire();
+        given(this.clock.millis()).willReturn(999_000L);
+
+        // When and then
+        assertThrows(IllegalStateException.class, () -> this.nodeIdentityService.checkLease());
+    }
+
+    @Test
+    void testReleaseRecordsLastTimestampAndStopsIds() {
+        // Given
+        leaseIdZeroAt(1_000_000L);
+        this.nodeIdentityService.trackLastTimestamp(() -> 1_000_042L);
+
+        // When
+        this.nodeIdentityService.release();
+
+        // Then
+        verify(this.workerIdLeaseRepository).release(eq(0), anyString(), eq(1_000_000L), eq(1_000_042L));
+        assertThrows(IllegalStateException.class, () -> this.nodeIdentityService.checkLease());
+    }
+
+    @Test
+    void testAcquireClaimsLowestUnusedId() {
+        // Given. Id 0 is taken; another node grabs id 1 at the same moment we try it.
+        given(this.clock.millis()).willReturn(1_000_000L);
+        given(this.workerIdLeaseRepository.findByExpiresAtLessThanOrderByWorkerId(1_000_000L)).willReturn(List.of());
+        given(this.workerIdLeaseRepository.findAllWorkerIds()).willReturn(List.of(0));
+        given(this.workerIdLeaseRepository.insert(eq(1), anyString(), eq(1_000_000L), eq(1_120_000L))).willThrow(new DataIntegrityViolationException("duplicate key"));
+        given(this.workerIdLeaseRepository.insert(eq(2), anyString(), eq(1_000_000L), eq(1_120_000L))).willReturn(1);
+
+        // When
+        this.nodeIdentityService.acquire();
+
+        // Then
+        assertThat(this.nodeIdentityService.getDatacenterId()).isEqualTo(0);
+        assertThat(this.nodeIdentityService.getWorkerId()).isEqualTo(2);
+        assertDoesNotThrow(() -> this.nodeIdentityService.checkLease());
+    }
+
+    @Test
+    void testAcquireFailsWhenAllIdsAreLeased() {
+        // Given
+        given(this.clock.millis()).willReturn(1_000_000L);
+        given(this.workerIdLeaseRepository.findByExpiresAtLessThanOrderByWorkerId(1_000_000L)).willReturn(List.of());
+        given(this.workerIdLeaseRepository.findAllWorkerIds()).willReturn(java.util.stream.IntStream.rangeClosed(0, NodeIdentityService.MAX_LEASED_ID).boxed().toList());
+
+        // When and then
+        assertThrows(IllegalStateException.class, () -> this.nodeIdentityService.acquire());
+    }
+
+    @Test
+    void testRenewDisablesIdsWhenClockMovesBackwards() {
+        // Given
+        leaseIdZeroAt(1_000_000L);
+        given(this.clock.millis()).willReturn(999_000L);
+
+        // When
+        this.nodeIdentityService.renew();
+
+        // Then
+        Throwable thrown = assertThrows(IllegalStateException.class, () -> this.nodeIdentityService.checkLease());
+        assertThat(thrown).hasMessageStartingWith("Clock moved backwards.");
+        verify(this.workerIdLeaseRepository, never()).renew(Mockito.any(), anyString(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void testRenewDisablesIdsWhenLeaseIsLost() {
+        // Given
+        leaseIdZeroAt(1_000_000L);
+        given(this.clock.millis()).willReturn(1_030_000L);
+        given(this.workerIdLeaseRepository.renew(eq(0), anyString(), eq(1_030_000L), eq(1_150_000L), eq(-1L))).willReturn(0);
+
+        // When
+        this.nodeIdentityService.renew();
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> this.nodeIdentityService.checkLease());
+    }
+
+    @Test
+    void testCheckLeaseFailsOnceLeaseExpires() {
+        // Given
+        leaseIdZeroAt(1_000_000L);
+        given(this.clock.millis()).willReturn(1_120_000L);
+
+        // When and then
+        assertThrows(IllegalStateException.class, () -> this.nodeIdentityService.checkLease());
+    }
+
+    private void leaseIdZeroAt(long now) {
+        given(this.clock.millis()).willReturn(now);
+        given(this.workerIdLeaseRepository.findByExpiresAtLessThanOrderByWorkerId(now)).willReturn(List.of());
+        given(this.workerIdLeaseRepository.findAllWorkerIds()).willReturn(List.of());
+        given(this.workerIdLeaseRepository.insert(eq(0), anyString(), eq(now), eq(now + 120_000L))).willReturn(1);
+        this.nodeIdentityService.acquire();
+    }
+}
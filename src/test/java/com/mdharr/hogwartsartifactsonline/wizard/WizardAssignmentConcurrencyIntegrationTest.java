@@ -0,0 +1,158 @@
+package com.mdharr.hogwartsartifactsonline.wizard;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdharr.hogwartsartifactsonline.artifact.Artifact;
+import com.mdharr.hogwartsartifactsonline.artifact.ArtifactRepository;
+import com.mdharr.hogwartsartifactsonline.system.StatusCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Races many PUT /wizards/{wizardId}/artifacts/{artifactId} calls over the same few artifacts and wizards,
+ * then checks that ownership, numberOfArtifacts and the cached ArtifactDtos all agree.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DisplayName("Concurrency tests for artifact assignment")
+@Tag("integration")
+class WizardAssignmentConcurrencyIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    WizardService wizardService;
+
+    @Autowired
+    WizardRepository wizardRepository;
+
+    @Autowired
+    ArtifactRepository artifactRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${api.endpoint.base-url}")
+    String baseUrl;
+
+    @Test
+    @DisplayName("Check a stale reassignment fails its version check instead of overwriting a newer one")
+    void testStaleAssignmentIsRejected() {
+        TransactionTemplate outer = new TransactionTemplate(this.transactionManager);
+        TransactionTemplate inner = new TransactionTemplate(this.transactionManager);
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> outer.executeWithoutResult(status -> {
+            Artifact staleArtifact = this.artifactRepository.findById("1250808601744904191").orElseThrow();
+            Wizard neville = this.wizardRepository.findById(3).orElseThrow();
+
+            // Another request moves the same artifact to Harry Potter and commits first.
+            inner.executeWithoutResult(innerStatus -> this.wizardService.assignArtifact(2, "1250808601744904191"));
+
+            staleArtifact.getOwner().removeArtifact(staleArtifact);
+            neville.addArtifact(staleArtifact);
+        }));
+
+        assertThat(this.artifactRepository.findIdsByOwnerId(2)).contains("1250808601744904191");
+        assertThat(this.artifactRepository.findIdsByOwnerId(3)).doesNotContain("1250808601744904191");
+    }
+
+    @Test
+    @DisplayName("Check concurrent reassignments keep ownership and cached artifacts consistent")
+    void testConcurrentAssignmentsKeepOwnershipConsistent() throws Exception {
+        List<String> artifactIds = this.artifactRepository.findAll().stream().map(Artifact::getId).toList();
+        List<Integer> wizardIds = List.of(1, 2, 3);
+        int threads = 8;
+        int requestsPerThread = 50;
+
+        // Warm the cache, so stale entries would show up below.
+        for (String artifactId : artifactIds) {
+            getData("/artifacts/" + artifactId);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<Integer, Integer>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                Map<Integer, Integer> codes = new HashMap<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < requestsPerThread; i++) {
+                    String artifactId = artifactIds.get(random.nextInt(artifactIds.size()));
+                    Integer wizardId = wizardIds.get(random.nextInt(wizardIds.size()));
+                    String content = this.mockMvc.perform(put(this.baseUrl + "/wizards/" + wizardId + "/artifacts/" + artifactId).accept(MediaType.APPLICATION_JSON))
+                            .andReturn().getResponse().getContentAsString();
+                    codes.merge(this.objectMapper.readTree(content).get("code").asInt(), 1, Integer::sum);
+                    // Reads race the writes, and may cache what they see.
+                    getData("/artifacts/" + artifactId);
+                }
+                return codes;
+            }));
+        }
+        start.countDown();
+
+        Map<Integer, Integer> codes = new HashMap<>();
+        for (Future<Map<Integer, Integer>> future : futures) {
+            future.get(2, TimeUnit.MINUTES).forEach((code, count) -> codes.merge(code, count, Integer::sum));
+        }
+        executor.shutdown();
+
+        // Every request either succeeded or ran out of retries, nothing failed with a 500.
+        assertThat(codes.keySet()).isSubsetOf(StatusCode.SUCCESS, StatusCode.CONFLICT);
+        assertThat(codes.get(StatusCode.SUCCESS)).isPositive();
+
+        int ownedArtifacts = 0;
+        for (Integer wizardId : wizardIds) {
+            List<String> ownedIds = this.artifactRepository.findIdsByOwnerId(wizardId);
+            ownedArtifacts += ownedIds.size();
+            assertThat(getData("/wizards/" + wizardId).get("numberOfArtifacts").asInt()).isEqualTo(ownedIds.size());
+            for (String artifactId : ownedIds) {
+                JsonNode owner = getData("/artifacts/" + artifactId).get("owner");
+                assertThat(owner.get("id").asInt()).isEqualTo(wizardId);
+                assertThat(owner.get("numberOfArtifacts").asInt()).isEqualTo(ownedIds.size());
+            }
+        }
+        // Every artifact was assigned at least once in 400 random requests, so none is left without an owner.
+        assertThat(ownedArtifacts).isEqualTo(artifactIds.size());
+    }
+
+    private JsonNode getData(String path) throws Exception {
+        String content = this.mockMvc.perform(get(this.baseUrl + path).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+        return this.objectMapper.readTree(content).get("data");
+    }
+}
@@ -19,10 +19,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
+import java.util.List;
+
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -61,6 +64,33 @@ class WizardControllerIntegrationTest {
                 .andExpect(jsonPath("$.data", Matchers.hasSize(3)));
     }
 
+    @Test
+    @DisplayName("Check findAllWizards and findWizardById answer 304 until a wizard's artifacts change (GET)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testFindWizardsNotModified() throws Exception {
+        String listETag = this.mockMvc.perform(get(this.baseUrl + "/wizards").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String wizardETag = this.mockMvc.perform(get(this.baseUrl + "/wizards/3").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(get(this.baseUrl + "/wizards").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token).header(HttpHeaders.IF_NONE_MATCH, listETag))
+                .andExpect(status().isNotModified());
+        this.mockMvc.perform(get(this.baseUrl + "/wizards/3").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token).header(HttpHeaders.IF_NONE_MATCH, wizardETag))
+                .andExpect(status().isNotModified());
+
+        // The bulk assignment changes Neville Longbottom's numberOfArtifacts without loading him.
+        this.mockMvc.perform(put(this.baseUrl + "/wizards/3/artifacts").contentType(MediaType.APPLICATION_JSON).content("[\"1250808601744904196\"]").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.data.assigned").value(1));
+
+        this.mockMvc.perform(get(this.baseUrl + "/wizards").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token).header(HttpHeaders.IF_NONE_MATCH, listETag))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(get(this.baseUrl + "/wizards/3").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token).header(HttpHeaders.IF_NONE_MATCH, wizardETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.numberOfArtifacts").value(2));
+    }
+
     @Test
     @DisplayName("Check findWizardById (GET)")
     void testFindWizardByIdSuccess() throws Exception {
@@ -234,4 +264,36 @@ class WizardControllerIntegrationTest {
                 .andExpect(jsonPath("$.data").isEmpty());
     }
 
+    @Test
+    @DisplayName("Check assignArtifacts with existing and non-existent artifact ids (PUT)")
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void testAssignArtifactsSuccess() throws Exception {
+        String json = this.objectMapper.writeValueAsString(List.of("1250808601744904191", "1250808601744904192", "1250808601744904196", "1250808601744904199"));
+
+        this.mockMvc.perform(put(this.baseUrl + "/wizards/3/artifacts").contentType(MediaType.APPLICATION_JSON).content(json).accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.message").value("Artifact Assignment Success"))
+                .andExpect(jsonPath("$.data.assigned").value(3))
+                .andExpect(jsonPath("$.data.missingArtifactIds", Matchers.contains("1250808601744904199")));
+        // The previous owners lose the artifacts, and cached artifacts show the new owner.
+        this.mockMvc.perform(get(this.baseUrl + "/wizards").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.data[0].numberOfArtifacts").value(1))
+                .andExpect(jsonPath("$.data[1].numberOfArtifacts").value(1))
+                .andExpect(jsonPath("$.data[2].numberOfArtifacts").value(4));
+        this.mockMvc.perform(get(this.baseUrl + "/artifacts/1250808601744904191").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.data.owner.name").value("Neville Longbottom"))
+                .andExpect(jsonPath("$.data.owner.numberOfArtifacts").value(4));
+    }
+
+    @Test
+    @DisplayName("Check assignArtifacts with non-existent wizard id (PUT)")
+    void testAssignArtifactsErrorWithNonExistentWizardId() throws Exception {
+        this.mockMvc.perform(put(this.baseUrl + "/wizards/5/artifacts").contentType(MediaType.APPLICATION_JSON).content("[\"1250808601744904191\"]").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, this.token))
+                .andExpect(jsonPath("$.flag").value(false))
+                .andExpect(jsonPath("$.code").value(StatusCode.NOT_FOUND))
+                .andExpect(jsonPath("$.message").value("Could not find wizard with Id 5 :("))
+                .andExpect(jsonPath("$.data").isEmpty());
+    }
+
 }
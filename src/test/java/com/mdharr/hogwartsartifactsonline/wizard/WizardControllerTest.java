@@ -3,6 +3,7 @@ package com.mdharr.hogwartsartifactsonline.wizard;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mdharr.hogwartsartifactsonline.system.StatusCode;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
+import com.mdharr.hogwartsartifactsonline.wizard.dto.ArtifactAssignmentSummary;
 import com.mdharr.hogwartsartifactsonline.wizard.dto.WizardDto;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
@@ -13,7 +14,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -24,8 +27,11 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc(addFilters = false) // The addFilters flag turns off Spring Security for this Unit test.
@@ -100,6 +106,20 @@ class WizardControllerTest {
                 .andExpect(jsonPath("$.data.name").value("Albus Dumbledore"));
     }
 
+    @Test
+    void testFindWizardByIdNotModifiedSkipsConversion() throws Exception {
+        // Given
+        given(this.wizardService.findById(1)).willReturn(this.wizards.get(0));
+        String eTag = this.mockMvc.perform(get(this.baseUrl + "/wizards/1").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // When and then
+        this.mockMvc.perform(get(this.baseUrl + "/wizards/1").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        verify(this.wizardService, times(1)).loadNumberOfArtifacts(Mockito.anyList());
+    }
+
     @Test
     void testFindWizardByIdNotFound() throws Exception {
         // Given
@@ -244,4 +264,32 @@ class WizardControllerTest {
                 .andExpect(jsonPath("$.message").value("Could not find artifact with Id 1250808601744904199 :("))
                 .andExpect(jsonPath("$.data").isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAssignArtifactErrorWhenRetriesAreExhausted() throws Exception {
+        // Given
+        doThrow(new ObjectOptimisticLockingFailureException(Wizard.class, 2)).when(this.wizardService).assignArtifact(2, "1250808601744904191");
+
+        // When and then
+        this.mockMvc.perform(put(this.baseUrl + "/wizards/2/artifacts/1250808601744904191").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(false))
+                .andExpect(jsonPath("$.code").value(StatusCode.CONFLICT))
+                .andExpect(jsonPath("$.message").value("The resource was changed by another request, please retry."));
+        Mockito.verify(this.wizardService, Mockito.times(5)).assignArtifact(2, "1250808601744904191");
+    }
+
+    @Test
+    void testAssignArtifactsSuccess() throws Exception {
+        // Given
+        List<String> artifactIds = List.of("1250808601744904191", "1250808601744904199");
+        given(this.wizardService.assignArtifacts(2, artifactIds)).willReturn(new ArtifactAssignmentSummary(1, List.of("1250808601744904199")));
+
+        // When and then
+        this.mockMvc.perform(put(this.baseUrl + "/wizards/2/artifacts").contentType(MediaType.APPLICATION_JSON).content(this.objectMapper.writeValueAsString(artifactIds)).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath("$.message").value("Artifact Assignment Success"))
+                .andExpect(jsonPath("$.data.assigned").value(1))
+                .andExpect(jsonPath("$.data.missingArtifactIds", Matchers.contains("1250808601744904199")));
+    }
+}
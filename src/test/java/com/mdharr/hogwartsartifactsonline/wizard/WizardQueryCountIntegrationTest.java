@@ -0,0 +1,156 @@
+package com.mdharr.hogwartsartifactsonline.wizard;
+
+import com.mdharr.hogwartsartifactsonline.artifact.Artifact;
+import com.mdharr.hogwartsartifactsonline.artifact.ArtifactRepository;
+import com.mdharr.hogwartsartifactsonline.system.StatusCode;
+import jakarta.persistence.EntityManagerFactory;
+import org.hamcrest.Matchers;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Makes sure the listing endpoints, the export and wizard deletion run a fixed number of SQL statements, no matter how many wizards and artifacts there are.
+ */
+// JDBC batching is off, so every statement is prepared and counted on its own, and per-row updates cannot hide in one batch.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=0"
+})
+@AutoConfigureMockMvc(addFilters = false)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DisplayName("Query count tests for listing endpoints")
+@Tag("integration")
+class WizardQueryCountIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    WizardRepository wizardRepository;
+
+    @Autowired
+    ArtifactRepository artifactRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Value("${api.endpoint.base-url}")
+    String baseUrl;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @DisplayName("Check findAllWizards runs the same number of statements for more wizards")
+    void testFindAllWizardsStatementCountIsConstant() throws Exception {
+        long statementsBefore = countStatements(this.baseUrl + "/wizards", "$.data", 3);
+
+        addWizardsWithArtifacts(10, 3);
+
+        long statementsAfter = countStatements(this.baseUrl + "/wizards", "$.data", 13);
+        assertThat(statementsAfter).isEqualTo(statementsBefore);
+    }
+
+    @Test
+    @DisplayName("Check findAllArtifacts runs the same number of statements for more owners")
+    void testFindAllArtifactsStatementCountIsConstant() throws Exception {
+        long statementsBefore = countStatements(this.baseUrl + "/artifacts?size=100", "$.data.content", 6);
+
+        addWizardsWithArtifacts(10, 3);
+
+        long statementsAfter = countStatements(this.baseUrl + "/artifacts?size=100", "$.data.content", 36);
+        assertThat(statementsAfter).isEqualTo(statementsBefore);
+    }
+
+    @Test
+    @DisplayName("Check exportArtifacts runs the same number of statements for more owners")
+    void testExportArtifactsStatementCountIsConstant() throws Exception {
+        long statementsBefore = countExportStatements(6);
+
+        addWizardsWithArtifacts(10, 3);
+
+        long statementsAfter = countExportStatements(36);
+        assertThat(statementsAfter).isEqualTo(statementsBefore);
+    }
+
+    @Test
+    @DisplayName("Check deleteWizard runs the same number of statements for more owned artifacts")
+    void testDeleteWizardStatementCountIsConstant() throws Exception {
+        Wizard smallOwner = addWizardWithArtifacts("Small Owner", 1);
+        Wizard largeOwner = addWizardWithArtifacts("Large Owner", 250);
+
+        long statementsForSmallOwner = countDeleteStatements(smallOwner.getId());
+        long statementsForLargeOwner = countDeleteStatements(largeOwner.getId());
+
+        assertThat(statementsForLargeOwner).isEqualTo(statementsForSmallOwner);
+        assertThat(this.wizardRepository.existsById(largeOwner.getId())).isFalse();
+        assertThat(this.artifactRepository.findIdsByOwnerId(largeOwner.getId())).isEmpty();
+        assertThat(this.artifactRepository.count()).isEqualTo(6 + 1 + 250);
+    }
+
+    private long countDeleteStatements(Integer wizardId) throws Exception {
+        this.statistics.clear();
+        this.mockMvc.perform(delete(this.baseUrl + "/wizards/" + wizardId).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS));
+        return this.statistics.getPrepareStatementCount();
+    }
+
+    private long countExportStatements(int expectedLines) throws Exception {
+        this.statistics.clear();
+        MvcResult mvcResult = this.mockMvc.perform(get(this.baseUrl + "/artifacts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = this.mockMvc.perform(asyncDispatch(mvcResult)).andReturn().getResponse().getContentAsString();
+        assertThat(body.split("\n")).hasSize(expectedLines);
+        return this.statistics.getPrepareStatementCount();
+    }
+
+    private long countStatements(String url, String listPath, int expectedSize) throws Exception {
+        this.statistics.clear();
+        this.mockMvc.perform(get(url).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.flag").value(true))
+                .andExpect(jsonPath("$.code").value(StatusCode.SUCCESS))
+                .andExpect(jsonPath(listPath, Matchers.hasSize(expectedSize)));
+        return this.statistics.getPrepareStatementCount();
+    }
+
+    private void addWizardsWithArtifacts(int numberOfWizards, int artifactsPerWizard) {
+        for (int i = 0; i < numberOfWizards; i++) {
+            addWizardWithArtifacts("Wizard " + i, artifactsPerWizard);
+        }
+    }
+
+    private Wizard addWizardWithArtifacts(String name, int numberOfArtifacts) {
+        Wizard wizard = new Wizard();
+        wizard.setName(name);
+        for (int j = 0; j < numberOfArtifacts; j++) {
+            Artifact artifact = new Artifact("query-count-" + name + "-" + j, "Artifact " + j, "Description " + j, "ImageUrl");
+            wizard.addArtifact(artifact);
+        }
+        return this.wizardRepository.save(wizard);
+    }
+}
@@ -1,8 +1,10 @@
 package com.mdharr.hogwartsartifactsonline.wizard;
 
 import com.mdharr.hogwartsartifactsonline.artifact.Artifact;
+import com.mdharr.hogwartsartifactsonline.artifact.ArtifactDtoCache;
 import com.mdharr.hogwartsartifactsonline.artifact.ArtifactRepository;
 import com.mdharr.hogwartsartifactsonline.system.exception.ObjectNotFoundException;
+import com.mdharr.hogwartsartifactsonline.wizard.dto.ArtifactAssignmentSummary;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,6 +17,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
@@ -32,6 +35,12 @@ class WizardServiceTest {
     @Mock
     ArtifactRepository artifactRepository;
 
+    @Mock
+    ArtifactDtoCache artifactDtoCache;
+
+    @Mock
+    WizardIdFilter wizardIdFilter;
+
     @InjectMocks
     WizardService wizardService;
 
@@ -65,13 +74,43 @@ class WizardServiceTest {
     void testFindAllSuccess() {
         // Given
         given(wizardRepository.findAll()).willReturn(this.wizards);
+        given(artifactRepository.countByOwnerIds(List.of(1, 2, 3))).willReturn(List.of(artifactCount(1, 2L)));
 
         // When
         List<Wizard> actualWizards = wizardService.findAll();
 
         // Then
         assertThat(actualWizards.size()).isEqualTo(this.wizards.size());
+        assertThat(actualWizards).extracting(Wizard::getNumberOfArtifacts).containsExactly(2, 0, 0);
         verify(wizardRepository, times(1)).findAll();
+        verify(artifactRepository, times(1)).countByOwnerIds(List.of(1, 2, 3));
+    }
+
+    @Test
+    void testLoadNumberOfArtifactsSkipsQueryWithoutWizards() {
+        // Given
+        List<Wizard> owners = new ArrayList<>();
+        owners.add(null);
+
+        // When
+        wizardService.loadNumberOfArtifacts(owners);
+
+        // Then
+        verify(artifactRepository, never()).countByOwnerIds(Mockito.any());
+    }
+
+    private static WizardArtifactCount artifactCount(Integer wizardId, Long numberOfArtifacts) {
+        return new WizardArtifactCount() {
+            @Override
+            public Integer getWizardId() {
+                return wizardId;
+            }
+
+            @Override
+            public Long getNumberOfArtifacts() {
+                return numberOfArtifacts;
+            }
+        };
     }
 
     @Test
@@ -81,6 +120,7 @@ class WizardServiceTest {
         w.setId(2);
         w.setName("Harry Potter");
 
+        given(wizardIdFilter.mightExist(2)).willReturn(true);
         given(wizardRepository.findById(2)).willReturn(Optional.of(w));
 
         // When
@@ -96,6 +136,7 @@ class WizardServiceTest {
     @Test
     void testFindByIdNotFound() {
         // Given
+        given(wizardIdFilter.mightExist(2)).willReturn(true);
         given(wizardRepository.findById(Mockito.any(Integer.class))).willReturn(Optional.empty());
 
         // When
@@ -109,6 +150,24 @@ class WizardServiceTest {
                 .hasMessage("Could not find wizard with Id 2 :(");
 
         verify(wizardRepository, times(1)).findById(2);
+        verify(wizardIdFilter, times(1)).recordMiss(2);
+    }
+
+    @Test
+    void testFindByIdNotFoundWithoutQueryAfterConfirmedMiss() {
+        // Given
+        given(wizardIdFilter.mightExist(9)).willReturn(false);
+
+        // When
+        Throwable thrown = catchThrowable(() -> wizardService.findById(9));
+
+        // Then
+        assertThat(thrown)
+                .isInstanceOf(ObjectNotFoundException.class)
+                .hasMessage("Could not find wizard with Id 9 :(");
+        assertThat(thrown.getStackTrace()).isEmpty();
+
+        verify(wizardRepository, never()).findById(Mockito.any());
     }
 
     @Test
@@ -125,6 +184,7 @@ class WizardServiceTest {
         assertThat(savedWizard.getName()).isEqualTo("Hermione Granger");
 
         verify(wizardRepository, times(1)).save(newWizard);
+        verify(wizardIdFilter, times(1)).add(savedWizard.getId());
     }
 
     @Test
@@ -182,6 +242,7 @@ class WizardServiceTest {
         wizardService.delete(1);
 
         // Then
+        verify(artifactRepository, times(1)).unassignOwner(1);
         verify(wizardRepository, times(1)).deleteById(1);
     }
 
@@ -197,6 +258,7 @@ class WizardServiceTest {
 
         // Then
         verify(wizardRepository, times(1)).findById(1);
+        verify(artifactRepository, never()).unassignOwner(1);
     }
 
     @Test
@@ -219,6 +281,8 @@ class WizardServiceTest {
 
         given(this.artifactRepository.findById("1250808601744904192")).willReturn(Optional.of(a));
         given(this.wizardRepository.findById(3)).willReturn(Optional.of(w3));
+        given(this.artifactRepository.findIdsByOwnerId(3)).willReturn(List.of("1250808601744904195"));
+        given(this.artifactRepository.findIdsByOwnerId(2)).willReturn(List.of("1250808601744904192", "1250808601744904194"));
 
         // When
         this.wizardService.assignArtifact(3, "1250808601744904192");
@@ -227,6 +291,7 @@ class WizardServiceTest {
         assertThat(a.getOwner().getId()).isEqualTo(3);
         assertThat(w3.getArtifacts()).contains(a);
         assertThat(w2.getArtifacts()).doesNotContain(a);
+        verify(this.artifactDtoCache, times(1)).evict(List.of("1250808601744904195", "1250808601744904192", "1250808601744904192", "1250808601744904194"));
 
     }
 
@@ -277,4 +342,66 @@ class WizardServiceTest {
                 .hasMessage("Could not find artifact with Id 1250808601744904192 :(");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAssignArtifactsSuccess() {
+        // Given
+        Wizard w3 = new Wizard();
+        w3.setId(3);
+        w3.setName("Neville Longbottom");
+
+        given(this.wizardRepository.findById(3)).willReturn(Optional.of(w3));
+        given(this.artifactRepository.findExistingIds(Set.of("1250808601744904192", "1250808601744904199", "1250808601744904196")))
+                .willReturn(List.of("1250808601744904192", "1250808601744904196"));
+        given(this.artifactRepository.findIdsSharingOwnerWith(Set.of("1250808601744904192", "1250808601744904196"), 3))
+                .willReturn(List.of("1250808601744904192", "1250808601744904194", "1250808601744904195"));
+        given(this.artifactRepository.findOwnerIds(Set.of("1250808601744904192", "1250808601744904196"))).willReturn(List.of(2));
+        given(this.artifactRepository.assignOwner(w3, Set.of("1250808601744904192", "1250808601744904196"))).willReturn(2);
+
+        // When
+        ArtifactAssignmentSummary summary = this.wizardService.assignArtifacts(3, List.of("1250808601744904192", "1250808601744904199", "1250808601744904196"));
+
+        // Then
+        assertThat(summary.assigned()).isEqualTo(2);
+        assertThat(summary.missingArtifactIds()).containsExactly("1250808601744904199");
+        verify(this.artifactDtoCache, times(1)).evict(argThat((List<String> ids) -> ids.containsAll(List.of(
+                "1250808601744904192", "1250808601744904194", "1250808601744904195", "1250808601744904196"))));
+        verify(this.artifactRepository, times(1)).assignOwner(w3, Set.of("1250808601744904192", "1250808601744904196"));
+        verify(this.wizardRepository, times(1)).touch(eq(Set.of(2, 3)), any());
+    }
+
+    @Test
+    void testAssignArtifactsWithOnlyMissingIds() {
+        // Given
+        Wizard w3 = new Wizard();
+        w3.setId(3);
+        w3.setName("Neville Longbottom");
+
+        given(this.wizardRepository.findById(3)).willReturn(Optional.of(w3));
+        given(this.artifactRepository.findExistingIds(Set.of("1250808601744904199"))).willReturn(List.of());
+
+        // When
+        ArtifactAssignmentSummary summary = this.wizardService.assignArtifacts(3, List.of("1250808601744904199"));
+
+        // Then
+        assertThat(summary.assigned()).isEqualTo(0);
+        assertThat(summary.missingArtifactIds()).containsExactly("1250808601744904199");
+        verify(this.artifactRepository, never()).assignOwner(any(), any());
+        verifyNoInteractions(this.artifactDtoCache);
+    }
+
+    @Test
+    void testAssignArtifactsErrorWithNonExistentWizardId() {
+        // Given
+        given(this.wizardRepository.findById(5)).willReturn(Optional.empty());
+
+        // When
+        Throwable thrown = catchThrowable(() -> this.wizardService.assignArtifacts(5, List.of("1250808601744904192")));
+
+        // Then
+        assertThat(thrown)
+                .isInstanceOf(ObjectNotFoundException.class)
+                .hasMessage("Could not find wizard with Id 5 :(");
+        verify(this.artifactRepository, never()).assignOwner(any(), any());
+    }
+}